@@ -14,7 +14,6 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -34,10 +33,8 @@ public class ApiHelper {
   private final Gson gson;
 
   private ApiHelper() {
-    this.okHttpClient = new OkHttpClient.Builder()
-      .connectTimeout(30, TimeUnit.SECONDS)
-      .readTimeout(30, TimeUnit.SECONDS)
-      .writeTimeout(30, TimeUnit.SECONDS)
+    // 加密拦截器只用于RCP接口
+    this.okHttpClient = HttpClientProvider.getInstance().getClient().newBuilder()
       .addInterceptor(new EncryptionInterceptor())
       .build();
     this.gson = new Gson();
@@ -116,6 +113,7 @@ public class ApiHelper {
       // 8. 检查响应
       if (!response.isSuccessful()) {
         int code = response.code();
+        response.close();
         if (code == 503) {
           throw new ApiError(503, "服务暂时不可用");
         } else if (code == 408 || code == 504) {
@@ -0,0 +1,155 @@
+package com.ionicframework.online.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Dns;
+
+/**
+ * 带缓存的DNS解析 - 解析结果在有效期内直接使用，并保存到SharedPreferences供下次启动使用
+ * 过期后重新解析，解析失败时继续使用过期的结果
+ */
+public class CachingDns implements Dns {
+  private static final String TAG = "CachingDns";
+  private static final String PREF_NAME = "dns_cache";
+  private static final String KEY_DNS_CACHE_JSON = "dns_cache_json";
+
+  // 默认有效期
+  private static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+  // 解析记录
+  private static class Record {
+    List<String> addresses;
+    long resolvedAt;
+
+    Record(List<String> addresses, long resolvedAt) {
+      this.addresses = addresses;
+      this.resolvedAt = resolvedAt;
+    }
+  }
+
+  private final Dns delegate;
+  private final Map<String, Record> records = new ConcurrentHashMap<>();
+  private final Gson gson = new Gson();
+  private volatile long ttlMs = DEFAULT_TTL_MS;
+  private volatile SharedPreferences prefs;
+
+  public CachingDns(Dns delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * 关联SharedPreferences，加载上次保存的解析结果，之后的解析结果会保存下来
+   */
+  public synchronized void attach(Context context) {
+    if (prefs != null) {
+      return;
+    }
+    prefs = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+
+    String json = prefs.getString(KEY_DNS_CACHE_JSON, null);
+    if (TextUtils.isEmpty(json)) {
+      return;
+    }
+    try {
+      Type type = new TypeToken<Map<String, Record>>() {}.getType();
+      Map<String, Record> loaded = gson.fromJson(json, type);
+      if (loaded != null) {
+        for (Map.Entry<String, Record> item : loaded.entrySet()) {
+          Record record = item.getValue();
+          // 内存中已有的是本次启动解析的结果，不覆盖
+          if (record != null && record.addresses != null && !record.addresses.isEmpty()) {
+            records.putIfAbsent(item.getKey(), record);
+          }
+        }
+      }
+      Log.d(TAG, "加载DNS缓存，记录数: " + records.size());
+    } catch (Exception e) {
+      Log.w(TAG, "解析DNS缓存失败，已清除", e);
+      prefs.edit().remove(KEY_DNS_CACHE_JSON).apply();
+    }
+  }
+
+  /**
+   * 设置解析结果有效期
+   */
+  public void setTtl(long ttlMs) {
+    this.ttlMs = Math.max(0, ttlMs);
+  }
+
+  @Override
+  public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+    Record record = records.get(hostname);
+    if (record != null && System.currentTimeMillis() - record.resolvedAt < ttlMs) {
+      List<InetAddress> cached = toInetAddresses(hostname, record);
+      if (!cached.isEmpty()) {
+        return cached;
+      }
+    }
+
+    try {
+      List<InetAddress> addresses = delegate.lookup(hostname);
+      List<String> hostAddresses = new ArrayList<>();
+      for (InetAddress address : addresses) {
+        hostAddresses.add(address.getHostAddress());
+      }
+      if (!hostAddresses.isEmpty()) {
+        records.put(hostname, new Record(hostAddresses, System.currentTimeMillis()));
+        save();
+      }
+      return addresses;
+    } catch (UnknownHostException e) {
+      // 网络暂时不可用时使用过期的结果
+      if (record != null) {
+        List<InetAddress> stale = toInetAddresses(hostname, record);
+        if (!stale.isEmpty()) {
+          Log.w(TAG, "DNS解析失败，使用过期的解析结果: " + hostname);
+          return stale;
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * 清除所有解析结果
+   */
+  public void clear() {
+    records.clear();
+    save();
+  }
+
+  private void save() {
+    SharedPreferences preferences = prefs;
+    if (preferences != null) {
+      preferences.edit().putString(KEY_DNS_CACHE_JSON, gson.toJson(new HashMap<>(records))).apply();
+    }
+  }
+
+  private static List<InetAddress> toInetAddresses(String hostname, Record record) {
+    List<InetAddress> addresses = new ArrayList<>();
+    for (String hostAddress : record.addresses) {
+      try {
+        // IP字面量不会触发DNS查询
+        addresses.add(InetAddress.getByAddress(hostname, InetAddress.getByName(hostAddress).getAddress()));
+      } catch (UnknownHostException e) {
+        Log.w(TAG, "无效的缓存地址: " + hostAddress);
+      }
+    }
+    return addresses;
+  }
+}
@@ -0,0 +1,245 @@
+package com.ionicframework.online.api;
+
+import android.util.Log;
+
+import com.ionicframework.online.utils.ConnectivityMonitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+
+/**
+ * 熔断器 - 按源站（协议+主机+端口）记录请求结果，连续失败或连续慢请求达到阈值后熔断
+ * 熔断（OPEN）期间请求立即失败，不再等待连接超时；到期后进入半开（HALF_OPEN）状态，
+ * 在后台发送一个探测请求，成功则恢复（CLOSED），失败则延长熔断时间
+ * 网络断开时所有请求立即失败，网络恢复后立即探测已熔断的源站
+ */
+public class CircuitBreaker implements ConnectivityMonitor.Listener {
+  private static final String TAG = "CircuitBreaker";
+
+  // 默认参数
+  private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  private static final long DEFAULT_SLOW_CALL_THRESHOLD_MS = 8000;
+  private static final long DEFAULT_OPEN_DURATION_MS = 5000;
+  private static final long MAX_OPEN_DURATION_MS = 2 * 60 * 1000;
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  /**
+   * 发送探测请求，结果通过 onSuccess/onFailure 返回
+   */
+  public interface Prober {
+    void probe(String origin);
+  }
+
+  /**
+   * 探测请求的标记（Request.tag），探测请求在熔断期间也会发出
+   */
+  public static final class Probe {
+    public static final Probe INSTANCE = new Probe();
+
+    private Probe() {
+    }
+  }
+
+  // 单个源站的状态
+  private static class Circuit {
+    State state = State.CLOSED;
+    int consecutiveFailures;
+    long openDurationMs = DEFAULT_OPEN_DURATION_MS;
+  }
+
+  private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+  private final Prober prober;
+  private final ScheduledExecutorService scheduler;
+  private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+  private volatile long slowCallThresholdMs = DEFAULT_SLOW_CALL_THRESHOLD_MS;
+  private volatile boolean networkAvailable = true;
+
+  public CircuitBreaker(Prober prober) {
+    this.prober = prober;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "CircuitBreakerProbe");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * 设置熔断的连续失败次数
+   */
+  public void setFailureThreshold(int failureThreshold) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+  }
+
+  /**
+   * 设置慢请求阈值，收到响应头的时间超过该值时按失败计
+   */
+  public void setSlowCallThresholdMs(long slowCallThresholdMs) {
+    this.slowCallThresholdMs = Math.max(1, slowCallThresholdMs);
+  }
+
+  /**
+   * 获取地址所属的源站
+   */
+  public static String originOf(HttpUrl url) {
+    return url.scheme() + "://" + url.host() + ":" + url.port();
+  }
+
+  /**
+   * 获取地址所属的源站，地址无效时返回null
+   */
+  public static String originOf(String url) {
+    HttpUrl httpUrl = url != null ? HttpUrl.parse(url) : null;
+    return httpUrl != null ? originOf(httpUrl) : null;
+  }
+
+  /**
+   * 当前是否允许向源站发送请求（网络可用且未熔断）
+   */
+  public boolean isCallPermitted(String origin) {
+    if (!networkAvailable) {
+      return false;
+    }
+    Circuit circuit = origin != null ? circuits.get(origin) : null;
+    if (circuit == null) {
+      return true;
+    }
+    synchronized (circuit) {
+      return circuit.state == State.CLOSED;
+    }
+  }
+
+  public boolean isNetworkAvailable() {
+    return networkAvailable;
+  }
+
+  public State getState(String origin) {
+    Circuit circuit = circuits.get(origin);
+    if (circuit == null) {
+      return State.CLOSED;
+    }
+    synchronized (circuit) {
+      return circuit.state;
+    }
+  }
+
+  /**
+   * 记录一次成功的请求
+   * @param latencyMs 收到响应头的时间
+   */
+  public void onSuccess(String origin, long latencyMs) {
+    if (latencyMs >= slowCallThresholdMs) {
+      Log.w(TAG, "慢请求: " + origin + ", " + latencyMs + "ms");
+      onFailure(origin);
+      return;
+    }
+
+    Circuit circuit = circuits.get(origin);
+    if (circuit == null) {
+      return;
+    }
+    synchronized (circuit) {
+      circuit.consecutiveFailures = 0;
+      if (circuit.state != State.CLOSED) {
+        circuit.state = State.CLOSED;
+        circuit.openDurationMs = DEFAULT_OPEN_DURATION_MS;
+        Log.i(TAG, "源站已恢复: " + origin);
+      }
+    }
+  }
+
+  /**
+   * 记录一次失败的请求（连接失败、超时或服务器错误），被取消的请求不应计入
+   */
+  public void onFailure(String origin) {
+    Circuit circuit = getOrCreateCircuit(origin);
+    long delayMs;
+    synchronized (circuit) {
+      circuit.consecutiveFailures++;
+      if (circuit.state == State.HALF_OPEN) {
+        // 探测失败，延长熔断时间
+        circuit.openDurationMs = Math.min(MAX_OPEN_DURATION_MS, circuit.openDurationMs * 2);
+      } else if (circuit.state == State.OPEN || circuit.consecutiveFailures < failureThreshold) {
+        return;
+      }
+      circuit.state = State.OPEN;
+      delayMs = circuit.openDurationMs;
+    }
+    Log.w(TAG, "源站熔断: " + origin + ", " + delayMs + "ms 后探测");
+    scheduleProbe(origin, delayMs);
+  }
+
+  /**
+   * 清除所有源站的状态
+   */
+  public void reset() {
+    circuits.clear();
+  }
+
+  @Override
+  public void onConnectivityChanged(boolean connected) {
+    networkAvailable = connected;
+    if (!connected) {
+      return;
+    }
+    // 网络恢复，立即探测已熔断的源站
+    for (String origin : circuits.keySet()) {
+      if (getState(origin) == State.OPEN) {
+        scheduleProbe(origin, 0);
+      }
+    }
+  }
+
+  private Circuit getOrCreateCircuit(String origin) {
+    Circuit circuit = circuits.get(origin);
+    if (circuit == null) {
+      Circuit created = new Circuit();
+      circuit = circuits.putIfAbsent(origin, created);
+      if (circuit == null) {
+        circuit = created;
+      }
+    }
+    return circuit;
+  }
+
+  private void scheduleProbe(final String origin, long delayMs) {
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        probe(origin);
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void probe(String origin) {
+    // 网络不可用时不探测，等网络恢复的回调
+    if (!networkAvailable) {
+      return;
+    }
+    Circuit circuit = circuits.get(origin);
+    if (circuit == null) {
+      return;
+    }
+    synchronized (circuit) {
+      if (circuit.state != State.OPEN) {
+        return;
+      }
+      circuit.state = State.HALF_OPEN;
+    }
+    Log.d(TAG, "探测源站: " + origin);
+    prober.probe(origin);
+  }
+}
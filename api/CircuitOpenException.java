@@ -0,0 +1,13 @@
+package com.ionicframework.online.api;
+
+import java.io.IOException;
+
+/**
+ * 源站已熔断或网络不可用，请求没有发出
+ */
+public class CircuitOpenException extends IOException {
+
+  public CircuitOpenException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,202 @@
+package com.ionicframework.online.api;
+
+import android.util.Log;
+
+import com.ionicframework.online.interceptor.RetryBudget;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 对冲请求 - 请求在阈值时间内没有收到响应头时，再发送一个相同的请求，使用先返回的响应并取消另一个
+ * 阈值为该主机最近首字节时间的P95，只用于可以安全重复的GET请求；
+ * 对冲请求数受预算限制，只占总请求数的很小比例，避免服务器变慢时请求量翻倍
+ */
+public class HedgedCallExecutor {
+  private static final String TAG = "HedgedCallExecutor";
+
+  // 阈值取首字节时间的分位数
+  private static final double THRESHOLD_PERCENTILE = 0.95;
+  // 没有历史数据时的阈值
+  private static final long DEFAULT_THRESHOLD_MS = 1000;
+  private static final long MIN_THRESHOLD_MS = 100;
+  private static final long MAX_THRESHOLD_MS = 5000;
+
+  // 对冲请求不超过请求数的5%
+  private static final double HEDGE_RATIO = 0.05;
+  private static final double HEDGE_MIN_PER_SECOND = 0.1;
+  private static final double HEDGE_MAX_BALANCE = 3;
+
+  private static HedgedCallExecutor instance;
+
+  private final NetworkMetrics metrics;
+  private final RetryBudget hedgeBudget = new RetryBudget(HEDGE_RATIO, HEDGE_MIN_PER_SECOND, HEDGE_MAX_BALANCE);
+  private volatile boolean enabled;
+
+  public static synchronized HedgedCallExecutor getInstance() {
+    if (instance == null) {
+      instance = new HedgedCallExecutor(NetworkMetrics.getInstance());
+    }
+    return instance;
+  }
+
+  private HedgedCallExecutor(NetworkMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * 开启或关闭对冲请求（默认关闭）
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    Log.i(TAG, "对冲请求: " + (enabled ? "开启" : "关闭"));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 同步执行请求，未开启或非GET请求时直接执行
+   */
+  public Response execute(OkHttpClient client, Request request) throws IOException {
+    if (!enabled || !"GET".equals(request.method())) {
+      return client.newCall(request).execute();
+    }
+
+    hedgeBudget.onRequest();
+    long thresholdMs = getThresholdMs(request.url().host());
+
+    HedgeState state = new HedgeState();
+    Call primary = client.newCall(request);
+    primary.enqueue(new ResultCallback(state));
+
+    Call hedge = null;
+    int outstanding = 1;
+    IOException lastFailure = null;
+
+    try {
+      Result result = state.results.poll(thresholdMs, TimeUnit.MILLISECONDS);
+      if (result == null) {
+        if (hedgeBudget.tryAcquireRetry()) {
+          Log.d(TAG, "超过 " + thresholdMs + "ms 未响应，发送对冲请求: " + request.url());
+          hedge = client.newCall(request);
+          hedge.enqueue(new ResultCallback(state));
+          outstanding++;
+        }
+        result = state.results.take();
+      }
+
+      while (true) {
+        outstanding--;
+        if (result.response != null) {
+          // 取消另一个请求，已经返回或稍后返回的响应都会被关闭
+          state.finish();
+          Call loser = result.call == primary ? hedge : primary;
+          if (loser != null) {
+            loser.cancel();
+            if (result.call == hedge) {
+              Log.d(TAG, "对冲请求先返回: " + request.url());
+            }
+          }
+          return result.response;
+        }
+
+        lastFailure = result.failure;
+        if (outstanding == 0) {
+          throw lastFailure;
+        }
+        result = state.results.take();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      state.finish();
+      primary.cancel();
+      if (hedge != null) {
+        hedge.cancel();
+      }
+      throw new InterruptedIOException("Interrupted while waiting for response");
+    }
+  }
+
+  private long getThresholdMs(String host) {
+    long p95 = metrics.getTtfbPercentile(host, THRESHOLD_PERCENTILE);
+    if (p95 < 0) {
+      return DEFAULT_THRESHOLD_MS;
+    }
+    return Math.max(MIN_THRESHOLD_MS, Math.min(MAX_THRESHOLD_MS, p95));
+  }
+
+  /**
+   * 请求结果
+   */
+  private static class Result {
+    final Call call;
+    final Response response;
+    final IOException failure;
+
+    Result(Call call, Response response, IOException failure) {
+      this.call = call;
+      this.response = response;
+      this.failure = failure;
+    }
+  }
+
+  /**
+   * 一次对冲执行的状态，选出结果后其余响应全部关闭
+   */
+  private static class HedgeState {
+    final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+    private boolean finished;
+
+    synchronized void offer(Result result) {
+      if (finished) {
+        if (result.response != null) {
+          result.response.close();
+        }
+        return;
+      }
+      results.offer(result);
+    }
+
+    synchronized void finish() {
+      finished = true;
+      Result result;
+      while ((result = results.poll()) != null) {
+        if (result.response != null) {
+          result.response.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * 把异步结果交给执行状态
+   */
+  private static class ResultCallback implements Callback {
+    private final HedgeState state;
+
+    ResultCallback(HedgeState state) {
+      this.state = state;
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+      state.offer(new Result(call, null, e));
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+      state.offer(new Result(call, response, null));
+    }
+  }
+}
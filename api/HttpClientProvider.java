@@ -0,0 +1,224 @@
+package com.ionicframework.online.api;
+
+import android.util.Log;
+
+import com.ionicframework.online.interceptor.CircuitBreakerInterceptor;
+import com.ionicframework.online.interceptor.ConcurrencyLimitInterceptor;
+import com.ionicframework.online.interceptor.RetryInterceptor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 共享网络客户端 - 所有组件共用同一个连接池、调度器和TLS会话，
+ * 各组件通过 getClient().newBuilder() 添加自己的拦截器，不影响其他组件；
+ * 所有请求的耗时和字节数记录在 NetworkMetrics 中，并按源站经过熔断器
+ * 连接池参数和HTTP/2开关需在第一次获取客户端之前设置，并发数可随时调整；
+ * 调度器只限制异步请求，同步请求的并发数由 ConcurrencyLimitInterceptor 按相同的上限限制
+ */
+public class HttpClientProvider {
+  private static final String TAG = "HttpClientProvider";
+
+  // 默认参数
+  private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+  private static final long DEFAULT_KEEP_ALIVE_MS = 5 * 60 * 1000;
+  private static final int DEFAULT_MAX_REQUESTS = 64;
+  private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 6;
+  private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+  // 资源和哈希文件下载的最大重试次数
+  private static final int DEFAULT_RESOURCE_MAX_RETRIES = 2;
+
+  private static HttpClientProvider instance;
+
+  private final Dispatcher dispatcher = new Dispatcher();
+  private final ConcurrencyLimitInterceptor concurrencyLimiter =
+    new ConcurrencyLimitInterceptor(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+  private final CachingDns dns = new CachingDns(Dns.SYSTEM);
+  private final CircuitBreaker circuitBreaker = new CircuitBreaker(new CircuitBreaker.Prober() {
+    @Override
+    public void probe(String origin) {
+      sendProbe(origin);
+    }
+  });
+  private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+  private long keepAliveMs = DEFAULT_KEEP_ALIVE_MS;
+  private boolean http2Enabled = true;
+  private OkHttpClient client;
+  private OkHttpClient resourceClient;
+
+  private HttpClientProvider() {
+    dispatcher.setMaxRequests(DEFAULT_MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(DEFAULT_MAX_REQUESTS_PER_HOST);
+  }
+
+  public static synchronized HttpClientProvider getInstance() {
+    if (instance == null) {
+      instance = new HttpClientProvider();
+    }
+    return instance;
+  }
+
+  /**
+   * 设置连接池参数，客户端创建后设置无效
+   * @param maxIdleConnections 最大空闲连接数
+   * @param keepAliveMs 空闲连接保持时间（毫秒）
+   */
+  public synchronized void setConnectionPool(int maxIdleConnections, long keepAliveMs) {
+    if (client != null) {
+      Log.w(TAG, "客户端已创建，连接池参数不再生效");
+      return;
+    }
+    this.maxIdleConnections = Math.max(0, maxIdleConnections);
+    this.keepAliveMs = Math.max(1, keepAliveMs);
+  }
+
+  /**
+   * 设置最大并发请求数，同时限制同步和异步请求
+   */
+  public void setMaxRequests(int maxRequests) {
+    dispatcher.setMaxRequests(Math.max(1, maxRequests));
+    concurrencyLimiter.setMaxRequests(maxRequests);
+  }
+
+  /**
+   * 设置同一主机的最大并发请求数，同时限制同步和异步请求；使用HTTP/2时同一主机的请求复用一个连接
+   */
+  public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+    dispatcher.setMaxRequestsPerHost(Math.max(1, maxRequestsPerHost));
+    concurrencyLimiter.setMaxRequestsPerHost(maxRequestsPerHost);
+  }
+
+  /**
+   * 开启或关闭HTTP/2，关闭后只使用HTTP/1.1，客户端创建后设置无效
+   */
+  public synchronized void setHttp2Enabled(boolean enabled) {
+    if (client != null) {
+      Log.w(TAG, "客户端已创建，HTTP/2设置不再生效");
+      return;
+    }
+    this.http2Enabled = enabled;
+  }
+
+  /**
+   * 获取共享的基础客户端，只含熔断和并发限制拦截器
+   * 组件需要自己的拦截器或超时时间时调用 newBuilder() 派生，派生的客户端共用连接池和调度器
+   */
+  public synchronized OkHttpClient getClient() {
+    if (client == null) {
+      client = new OkHttpClient.Builder()
+        .connectTimeout(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .readTimeout(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .writeTimeout(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+        .dispatcher(dispatcher)
+        .dns(dns)
+        .addInterceptor(new CircuitBreakerInterceptor(circuitBreaker))
+        .addInterceptor(concurrencyLimiter)
+        .eventListenerFactory(MetricsEventListener.FACTORY)
+        .protocols(http2Enabled
+          ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+          : Collections.singletonList(Protocol.HTTP_1_1))
+        .build();
+      Log.i(TAG, "共享网络客户端已创建，最大空闲连接数: " + maxIdleConnections +
+        ", 保持时间: " + keepAliveMs + "ms, HTTP/2: " + http2Enabled);
+    }
+    return client;
+  }
+
+  /**
+   * 获取资源和哈希文件下载使用的客户端：在共享客户端基础上自动重试失败的GET请求，
+   * 重试受全局重试预算限制
+   */
+  public synchronized OkHttpClient getResourceClient() {
+    if (resourceClient == null) {
+      resourceClient = getClient().newBuilder()
+        .addInterceptor(new RetryInterceptor(DEFAULT_RESOURCE_MAX_RETRIES))
+        .build();
+    }
+    return resourceClient;
+  }
+
+  /**
+   * 获取带缓存的DNS解析，调用 attach(context) 后解析结果可跨启动保存
+   */
+  public CachingDns getDns() {
+    return dns;
+  }
+
+  /**
+   * 获取熔断器，需要关联 ConnectivityMonitor 才能感知网络断开和恢复
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * 预先建立到指定地址所在主机的连接：完成DNS解析、TCP和TLS握手后连接留在共享连接池中，
+   * 之后对同一主机的请求直接复用；异步执行，不阻塞调用方
+   * @param url 目标地址，如 Constants.getEnv().getIp()
+   */
+  public void preconnect(String url) {
+    final HttpUrl httpUrl = url != null ? HttpUrl.parse(url) : null;
+    if (httpUrl == null) {
+      Log.w(TAG, "无效的预连接地址: " + url);
+      return;
+    }
+
+    final long startTime = System.currentTimeMillis();
+    Request request = new Request.Builder()
+      .url(httpUrl.newBuilder().encodedPath("/").query(null).build())
+      .head()
+      .build();
+
+    getClient().newCall(request).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        Log.w(TAG, "预连接失败: " + httpUrl.host() + ", " + e.getMessage());
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        // 只需要建立连接，响应状态不重要
+        response.close();
+        Log.d(TAG, "预连接完成: " + httpUrl.host() + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+      }
+    });
+  }
+
+  /**
+   * 向熔断的源站发送探测请求，结果由熔断拦截器计入
+   */
+  private void sendProbe(final String origin) {
+    Request request = new Request.Builder()
+      .url(origin + "/")
+      .head()
+      .tag(CircuitBreaker.Probe.class, CircuitBreaker.Probe.INSTANCE)
+      .build();
+
+    getClient().newCall(request).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        Log.w(TAG, "源站探测失败: " + origin + ", " + e.getMessage());
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        response.close();
+        Log.d(TAG, "源站探测完成: " + origin + ", 状态码: " + response.code());
+      }
+    });
+  }
+}
@@ -0,0 +1,106 @@
+package com.ionicframework.online.api;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * 网络事件监听 - 记录每次请求的DNS、连接、TLS握手和首字节时间，请求结束时写入 NetworkMetrics
+ * 请求结束指响应体读取完毕或关闭，因此总耗时包含读取响应体的时间
+ */
+public class MetricsEventListener extends EventListener {
+
+  public static final Factory FACTORY = new Factory() {
+    @Override
+    public EventListener create(Call call) {
+      return new MetricsEventListener(NetworkMetrics.getInstance());
+    }
+  };
+
+  private final NetworkMetrics metrics;
+  private NetworkMetrics.Sample sample;
+  private long dnsStartNanos;
+  private long connectStartNanos;
+  private long secureConnectStartNanos;
+
+  private MetricsEventListener(NetworkMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void callStart(Call call) {
+    sample = metrics.begin(call);
+  }
+
+  @Override
+  public void dnsStart(Call call, String domainName) {
+    dnsStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+    sample.dnsMs = elapsedMs(dnsStartNanos);
+  }
+
+  @Override
+  public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+    connectStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectStart(Call call) {
+    secureConnectStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectEnd(Call call, Handshake handshake) {
+    sample.tlsMs = elapsedMs(secureConnectStartNanos);
+  }
+
+  @Override
+  public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+    // 包含TLS握手时间
+    sample.connectMs = elapsedMs(connectStartNanos);
+  }
+
+  @Override
+  public void responseHeadersStart(Call call) {
+    // 重定向或重试时只记录第一次
+    if (sample.ttfbMs < 0) {
+      sample.ttfbMs = sample.elapsedMs();
+    }
+  }
+
+  @Override
+  public void responseHeadersEnd(Call call, Response response) {
+    sample.statusCode = response.code();
+  }
+
+  @Override
+  public void responseBodyEnd(Call call, long byteCount) {
+    // 传输层的字节数（压缩传输时为压缩后的大小）
+    sample.responseBytes = byteCount;
+  }
+
+  @Override
+  public void callEnd(Call call) {
+    metrics.end(call, true);
+  }
+
+  @Override
+  public void callFailed(Call call, IOException ioe) {
+    metrics.end(call, false);
+  }
+
+  private static long elapsedMs(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1000000;
+  }
+}
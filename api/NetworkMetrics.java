@@ -0,0 +1,357 @@
+package com.ionicframework.online.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+
+/**
+ * 网络请求指标 - 按主机汇总每次请求的DNS、连接、TLS、首字节时间、总耗时和字节数
+ * 时间和传输字节数由 MetricsEventListener 写入，交给调用方的字节数由 MetricsInterceptor 写入，
+ * 其他组件可查询（如按首字节时间分位数决定超时）
+ */
+public class NetworkMetrics {
+
+  // 每个主机保留最近的样本数，用于计算分位数
+  private static final int WINDOW_SIZE = 200;
+
+  private static NetworkMetrics instance;
+
+  private final Map<Call, Sample> inFlight = new ConcurrentHashMap<>();
+  private final Map<String, HostStats> hostStats = new ConcurrentHashMap<>();
+
+  public static synchronized NetworkMetrics getInstance() {
+    if (instance == null) {
+      instance = new NetworkMetrics();
+    }
+    return instance;
+  }
+
+  private NetworkMetrics() {
+  }
+
+  /**
+   * 单次请求的指标，未发生的阶段为-1（如复用连接时没有DNS和连接耗时）
+   */
+  public static class Sample {
+    final String host;
+    final String method;
+    final long startNanos = System.nanoTime();
+    volatile long dnsMs = -1;
+    volatile long connectMs = -1;
+    volatile long tlsMs = -1;
+    volatile long ttfbMs = -1;
+    volatile long totalMs = -1;
+    volatile long responseBytes = -1;
+    volatile int statusCode;
+    volatile boolean success;
+
+    Sample(String host, String method) {
+      this.host = host;
+      this.method = method;
+    }
+
+    long elapsedMs() {
+      return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    public long getDnsMs() {
+      return dnsMs;
+    }
+
+    public long getConnectMs() {
+      return connectMs;
+    }
+
+    public long getTlsMs() {
+      return tlsMs;
+    }
+
+    public long getTtfbMs() {
+      return ttfbMs;
+    }
+
+    public long getTotalMs() {
+      return totalMs;
+    }
+
+    public long getResponseBytes() {
+      return responseBytes;
+    }
+
+    public int getStatusCode() {
+      return statusCode;
+    }
+
+    public boolean isSuccess() {
+      return success;
+    }
+  }
+
+  /**
+   * 某个主机的指标汇总
+   */
+  public static class HostMetrics {
+    private final String host;
+    private final long requestCount;
+    private final long failureCount;
+    private final long newConnectionCount;
+    private final long totalBytes;
+    private final long deliveredBytes;
+    private final long averageDnsMs;
+    private final long averageConnectMs;
+    private final long averageTlsMs;
+    private final long ttfbP50Ms;
+    private final long ttfbP95Ms;
+    private final long totalP50Ms;
+    private final long totalP95Ms;
+
+    HostMetrics(String host, long requestCount, long failureCount, long newConnectionCount,
+                long totalBytes, long deliveredBytes, long averageDnsMs, long averageConnectMs, long averageTlsMs,
+                long ttfbP50Ms, long ttfbP95Ms, long totalP50Ms, long totalP95Ms) {
+      this.host = host;
+      this.requestCount = requestCount;
+      this.failureCount = failureCount;
+      this.newConnectionCount = newConnectionCount;
+      this.totalBytes = totalBytes;
+      this.deliveredBytes = deliveredBytes;
+      this.averageDnsMs = averageDnsMs;
+      this.averageConnectMs = averageConnectMs;
+      this.averageTlsMs = averageTlsMs;
+      this.ttfbP50Ms = ttfbP50Ms;
+      this.ttfbP95Ms = ttfbP95Ms;
+      this.totalP50Ms = totalP50Ms;
+      this.totalP95Ms = totalP95Ms;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public long getRequestCount() {
+      return requestCount;
+    }
+
+    public long getFailureCount() {
+      return failureCount;
+    }
+
+    public long getNewConnectionCount() {
+      return newConnectionCount;
+    }
+
+    /**
+     * 传输层接收的字节数
+     */
+    public long getTotalBytes() {
+      return totalBytes;
+    }
+
+    /**
+     * 交给调用方的响应体字节数（解压后）
+     */
+    public long getDeliveredBytes() {
+      return deliveredBytes;
+    }
+
+    public long getAverageDnsMs() {
+      return averageDnsMs;
+    }
+
+    public long getAverageConnectMs() {
+      return averageConnectMs;
+    }
+
+    public long getAverageTlsMs() {
+      return averageTlsMs;
+    }
+
+    public long getTtfbP50Ms() {
+      return ttfbP50Ms;
+    }
+
+    public long getTtfbP95Ms() {
+      return ttfbP95Ms;
+    }
+
+    public long getTotalP50Ms() {
+      return totalP50Ms;
+    }
+
+    public long getTotalP95Ms() {
+      return totalP95Ms;
+    }
+
+    @Override
+    public String toString() {
+      return host + ": 请求 " + requestCount + ", 失败 " + failureCount + ", 新建连接 " + newConnectionCount +
+        ", 传输字节 " + totalBytes + ", 响应字节 " + deliveredBytes +
+        ", DNS " + averageDnsMs + "ms, 连接 " + averageConnectMs + "ms, TLS " + averageTlsMs +
+        "ms, 首字节 P50/P95 " + ttfbP50Ms + "/" + ttfbP95Ms + "ms, 总耗时 P50/P95 " + totalP50Ms + "/" + totalP95Ms + "ms";
+    }
+  }
+
+  /**
+   * 单个主机的累计数据
+   */
+  private static class HostStats {
+    long requestCount;
+    long failureCount;
+    long newConnectionCount;
+    long totalBytes;
+    long deliveredBytes;
+    long dnsCount;
+    long dnsTotalMs;
+    long connectTotalMs;
+    long tlsCount;
+    long tlsTotalMs;
+    final long[] ttfbWindow = new long[WINDOW_SIZE];
+    final long[] totalWindow = new long[WINDOW_SIZE];
+    int ttfbCount;
+    int totalCount;
+
+    synchronized void add(Sample sample) {
+      requestCount++;
+      if (!sample.success) {
+        failureCount++;
+      }
+      if (sample.responseBytes > 0) {
+        totalBytes += sample.responseBytes;
+      }
+      if (sample.dnsMs >= 0) {
+        dnsCount++;
+        dnsTotalMs += sample.dnsMs;
+      }
+      if (sample.connectMs >= 0) {
+        newConnectionCount++;
+        connectTotalMs += sample.connectMs;
+      }
+      if (sample.tlsMs >= 0) {
+        tlsCount++;
+        tlsTotalMs += sample.tlsMs;
+      }
+      if (sample.ttfbMs >= 0) {
+        ttfbWindow[ttfbCount++ % WINDOW_SIZE] = sample.ttfbMs;
+      }
+      if (sample.success && sample.totalMs >= 0) {
+        totalWindow[totalCount++ % WINDOW_SIZE] = sample.totalMs;
+      }
+    }
+
+    synchronized long ttfbPercentile(double percentile) {
+      return percentile(ttfbWindow, ttfbCount, percentile);
+    }
+
+    synchronized HostMetrics snapshot(String host) {
+      return new HostMetrics(host, requestCount, failureCount, newConnectionCount, totalBytes, deliveredBytes,
+        dnsCount > 0 ? dnsTotalMs / dnsCount : -1,
+        newConnectionCount > 0 ? connectTotalMs / newConnectionCount : -1,
+        tlsCount > 0 ? tlsTotalMs / tlsCount : -1,
+        percentile(ttfbWindow, ttfbCount, 0.5), percentile(ttfbWindow, ttfbCount, 0.95),
+        percentile(totalWindow, totalCount, 0.5), percentile(totalWindow, totalCount, 0.95));
+    }
+
+    private static long percentile(long[] window, int count, double percentile) {
+      int size = Math.min(count, WINDOW_SIZE);
+      if (size == 0) {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(window, size);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * size) - 1;
+      return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+  }
+
+  /**
+   * 请求开始，返回该请求的指标样本
+   */
+  Sample begin(Call call) {
+    Sample sample = new Sample(call.request().url().host(), call.request().method());
+    inFlight.put(call, sample);
+    return sample;
+  }
+
+  /**
+   * 记录交给调用方的响应体字节数
+   */
+  public void recordDeliveredBytes(String host, long byteCount) {
+    HostStats stats = getOrCreateStats(host);
+    synchronized (stats) {
+      stats.deliveredBytes += byteCount;
+    }
+  }
+
+  /**
+   * 请求结束，计入所属主机的汇总
+   */
+  void end(Call call, boolean success) {
+    Sample sample = inFlight.remove(call);
+    if (sample == null) {
+      return;
+    }
+    sample.totalMs = sample.elapsedMs();
+    sample.success = success;
+
+    getOrCreateStats(sample.host).add(sample);
+  }
+
+  private HostStats getOrCreateStats(String host) {
+    HostStats stats = hostStats.get(host);
+    if (stats == null) {
+      HostStats created = new HostStats();
+      stats = hostStats.putIfAbsent(host, created);
+      if (stats == null) {
+        stats = created;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * 获取主机最近请求的首字节时间分位数
+   * @param percentile 分位数，如 0.95
+   * @return 毫秒，没有数据时返回-1
+   */
+  public long getTtfbPercentile(String host, double percentile) {
+    HostStats stats = hostStats.get(host);
+    return stats != null ? stats.ttfbPercentile(percentile) : -1;
+  }
+
+  /**
+   * 获取主机的指标汇总，没有数据时返回null
+   */
+  public HostMetrics getHostMetrics(String host) {
+    HostStats stats = hostStats.get(host);
+    return stats != null ? stats.snapshot(host) : null;
+  }
+
+  /**
+   * 获取所有主机的指标汇总
+   */
+  public List<HostMetrics> getAllHostMetrics() {
+    List<HostMetrics> result = new ArrayList<>();
+    for (Map.Entry<String, HostStats> entry : hostStats.entrySet()) {
+      result.add(entry.getValue().snapshot(entry.getKey()));
+    }
+    return result;
+  }
+
+  /**
+   * 清除已汇总的数据
+   */
+  public void reset() {
+    hostStats.clear();
+  }
+}
@@ -0,0 +1,226 @@
+package com.ionicframework.online.core;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内容寻址存储 - 文件按内容MD5只保存一份，不同版本、不同路径的相同内容共用同一个文件
+ * 版本视图就是哈希记录本身（路径MD5 -> 内容MD5），每个版本引用的内容MD5记录在 refs 目录中，
+ * 没有任何版本引用的文件在垃圾回收时删除
+ * 目录结构: blobs/<md5前两位>/<md5>，blobs/refs/<资源路径>.refs
+ */
+public class BlobStore {
+  private static final String TAG = "BlobStore";
+  private static final String REFS_DIR_NAME = "refs";
+  private static final String REFS_FILE_SUFFIX = ".refs";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final File blobRootDir;
+  private final File refsDir;
+
+  public BlobStore(File blobRootDir) {
+    this.blobRootDir = blobRootDir;
+    this.refsDir = new File(blobRootDir, REFS_DIR_NAME);
+  }
+
+  /**
+   * 获取存储根目录
+   */
+  public File getRootDir() {
+    return blobRootDir;
+  }
+
+  /**
+   * 获取内容MD5对应的文件（不保证存在）
+   */
+  public File getBlobFile(String md5) {
+    String digest = md5.toLowerCase();
+    return new File(new File(blobRootDir, digest.substring(0, 2)), digest);
+  }
+
+  /**
+   * 内容MD5对应的文件是否存在
+   */
+  public boolean contains(String md5) {
+    File blobFile = getBlobFile(md5);
+    return blobFile.exists() && blobFile.length() > 0;
+  }
+
+  /**
+   * 记录版本引用的所有内容MD5，已记录的版本会被覆盖
+   */
+  public synchronized boolean retainVersion(String resourcePath, Collection<String> digests) {
+    if (TextUtils.isEmpty(resourcePath) || digests == null) {
+      return false;
+    }
+
+    if (!refsDir.exists() && !refsDir.mkdirs()) {
+      Log.e(TAG, "创建引用目录失败: " + refsDir.getAbsolutePath());
+      return false;
+    }
+
+    File refsFile = getRefsFile(resourcePath);
+    File tempFile = new File(refsDir, refsFile.getName() + TEMP_FILE_SUFFIX);
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+      for (String digest : new HashSet<>(digests)) {
+        if (digest != null) {
+          writer.write(digest.toLowerCase());
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "保存版本引用失败: " + resourcePath, e);
+      tempFile.delete();
+      return false;
+    }
+
+    if (!tempFile.renameTo(refsFile)) {
+      Log.e(TAG, "保存版本引用失败: 重命名失败");
+      tempFile.delete();
+      return false;
+    }
+
+    Log.d(TAG, "版本引用已记录: " + resourcePath + ", 文件数: " + digests.size());
+    return true;
+  }
+
+  /**
+   * 版本的引用是否已记录
+   */
+  public synchronized boolean isVersionRetained(String resourcePath) {
+    return !TextUtils.isEmpty(resourcePath) && getRefsFile(resourcePath).exists();
+  }
+
+  /**
+   * 释放版本引用，并回收不再被任何版本引用的文件
+   * @return 回收的文件数
+   */
+  public synchronized int releaseVersion(String resourcePath) {
+    return releaseVersion(resourcePath, null);
+  }
+
+  /**
+   * 释放版本引用，并回收不再被任何版本引用的文件
+   * @param pinnedDigests 没有记录引用也不回收的内容MD5（如当前生效的哈希记录），可为null
+   * @return 回收的文件数
+   */
+  public synchronized int releaseVersion(String resourcePath, Collection<String> pinnedDigests) {
+    File refsFile = getRefsFile(resourcePath);
+    if (refsFile.exists() && !refsFile.delete()) {
+      Log.w(TAG, "删除版本引用失败: " + resourcePath);
+    }
+    return collectGarbage(pinnedDigests);
+  }
+
+  /**
+   * 统计每个内容MD5被多少个版本引用
+   */
+  public synchronized Map<String, Integer> countReferences() {
+    Map<String, Integer> referenceCounts = new HashMap<>();
+    File[] refsFiles = refsDir.listFiles();
+    if (refsFiles == null) {
+      return referenceCounts;
+    }
+
+    for (File refsFile : refsFiles) {
+      if (!refsFile.getName().endsWith(REFS_FILE_SUFFIX)) {
+        continue;
+      }
+      try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(refsFile), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.isEmpty()) {
+            Integer count = referenceCounts.get(line);
+            referenceCounts.put(line, count == null ? 1 : count + 1);
+          }
+        }
+      } catch (IOException e) {
+        Log.e(TAG, "读取版本引用失败: " + refsFile.getName(), e);
+      }
+    }
+    return referenceCounts;
+  }
+
+  /**
+   * 垃圾回收：删除引用计数为0的文件
+   * @return 回收的文件数
+   */
+  public synchronized int collectGarbage() {
+    return collectGarbage(null);
+  }
+
+  /**
+   * 垃圾回收：删除引用计数为0且不在 pinnedDigests 中的文件
+   * @param pinnedDigests 没有记录引用也不回收的内容MD5，可为null
+   * @return 回收的文件数
+   */
+  public synchronized int collectGarbage(Collection<String> pinnedDigests) {
+    Set<String> liveDigests = new HashSet<>(countReferences().keySet());
+    if (pinnedDigests != null) {
+      for (String digest : pinnedDigests) {
+        if (digest != null) {
+          liveDigests.add(digest.toLowerCase());
+        }
+      }
+    }
+    int collected = 0;
+
+    File[] shardDirs = blobRootDir.listFiles();
+    if (shardDirs == null) {
+      return 0;
+    }
+
+    for (File shardDir : shardDirs) {
+      if (!shardDir.isDirectory() || shardDir.equals(refsDir)) {
+        continue;
+      }
+      File[] blobFiles = shardDir.listFiles();
+      if (blobFiles == null) {
+        continue;
+      }
+      for (File blobFile : blobFiles) {
+        String name = blobFile.getName();
+        // 压缩存储的文件名为 <md5>.cgz，按点号前的MD5判断引用
+        int dotIndex = name.indexOf('.');
+        String digest = dotIndex > 0 ? name.substring(0, dotIndex) : name;
+        // 正在写入的临时文件不回收
+        if (name.endsWith(TEMP_FILE_SUFFIX) || liveDigests.contains(digest)) {
+          continue;
+        }
+        if (blobFile.delete()) {
+          collected++;
+        }
+      }
+      String[] remaining = shardDir.list();
+      if (remaining != null && remaining.length == 0) {
+        shardDir.delete();
+      }
+    }
+
+    Log.i(TAG, "内容存储垃圾回收完成，回收文件数: " + collected);
+    return collected;
+  }
+
+  private File getRefsFile(String resourcePath) {
+    // 将路径中的斜杠替换为下划线
+    String safeName = resourcePath.replace("/", "_").replace("\\", "_");
+    return new File(refsDir, safeName + REFS_FILE_SUFFIX);
+  }
+}
@@ -0,0 +1,231 @@
+package com.ionicframework.online.core;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.china.ncbcmbs.Constants;
+import com.ionicframework.online.api.HttpClientProvider;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 整包下载器 - 一次请求下载整个版本的资源压缩包，边下载边解压到缓存目录
+ * 每个文件解压时按哈希记录校验，校验通过才写入缓存；哈希记录中没有的文件无法校验，不写入缓存
+ * 压缩包地址: /resources/<resourcePath>/bundle.zip，包内路径以 www/ 开头
+ */
+public class BundleDownloader {
+  private static final String TAG = "BundleDownloader";
+  private static final String BUNDLE_FILE_NAME = "bundle.zip";
+  private static final String WWW_PREFIX = "www/";
+
+  // 解压进度回调接口
+  public interface Listener {
+    void onEntry(String relativePath, boolean cached);
+    boolean isCancelled();
+  }
+
+  /**
+   * 整包下载结果
+   */
+  public static class Result {
+    private final boolean available;
+    private int cachedCount;
+    private int failedCount;
+    private int skippedCount;
+
+    Result(boolean available) {
+      this.available = available;
+    }
+
+    /**
+     * 服务器是否提供整包
+     */
+    public boolean isAvailable() {
+      return available;
+    }
+
+    public int getCachedCount() {
+      return cachedCount;
+    }
+
+    public int getFailedCount() {
+      return failedCount;
+    }
+
+    public int getSkippedCount() {
+      return skippedCount;
+    }
+
+    /**
+     * 整包可用且所有文件都已缓存或校验通过
+     */
+    public boolean isComplete() {
+      return available && failedCount == 0;
+    }
+  }
+
+  private final OnLineCacheManager cacheManager;
+  private final OkHttpClient okHttpClient;
+
+  public BundleDownloader(Context context) {
+    this.cacheManager = OnLineCacheManager.getInstance(context);
+    this.okHttpClient = HttpClientProvider.getInstance().getResourceClient();
+  }
+
+  /**
+   * 下载并解压整包到指定版本的资源目录
+   * @param resourcePath 资源路径，可以是当前版本或后台准备中的新版本
+   * @param fileRecord 哈希记录，key=文件相对路径的MD5，value=文件内容的MD5
+   * @param listener 进度回调，可为null
+   * @return 下载结果，服务器不提供整包时 isAvailable() 为false
+   */
+  public Result download(String resourcePath, Map<String, String> fileRecord, Listener listener) throws IOException {
+    String url = String.format("%s/resources/%s/%s", Constants.getEnv().getIp(), resourcePath, BUNDLE_FILE_NAME);
+    Log.d(TAG, "下载资源整包: " + url);
+
+    Request request = new Request.Builder()
+      .url(url)
+      .get()
+      .build();
+
+    try (Response response = okHttpClient.newCall(request).execute()) {
+      ResponseBody responseBody = response.body();
+      if (response.code() != 200 || responseBody == null) {
+        Log.w(TAG, "资源整包不可用，HTTP " + response.code());
+        return new Result(false);
+      }
+
+      Result result = new Result(true);
+      try (ZipInputStream zipInputStream = new ZipInputStream(responseBody.byteStream())) {
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+          if (listener != null && listener.isCancelled()) {
+            Log.i(TAG, "整包下载已取消");
+            result.failedCount++;
+            break;
+          }
+          if (entry.isDirectory()) {
+            continue;
+          }
+
+          String relativePath = toRelativePath(entry.getName());
+          if (relativePath == null) {
+            Log.w(TAG, "跳过非法的包内路径: " + entry.getName());
+            result.skippedCount++;
+            continue;
+          }
+
+          String expectedMd5 = HashFileDownloader.lookupExpectedMd5(fileRecord, relativePath);
+          if (expectedMd5 == null) {
+            // 未经校验的文件不写入缓存，使用时按正常流程下载并重新确认
+            Log.d(TAG, "跳过哈希记录中没有的文件: " + relativePath);
+            result.skippedCount++;
+            continue;
+          }
+          if (cacheManager.isVerified(resourcePath, relativePath, expectedMd5)) {
+            result.skippedCount++;
+            continue;
+          }
+
+          boolean cached = extractEntry(zipInputStream, resourcePath, relativePath, expectedMd5);
+          if (cached) {
+            result.cachedCount++;
+          } else {
+            result.failedCount++;
+          }
+          if (listener != null) {
+            listener.onEntry(relativePath, cached);
+          }
+        }
+      }
+
+      Log.i(TAG, "资源整包处理完成，缓存: " + result.cachedCount + ", 跳过: " + result.skippedCount +
+        ", 失败: " + result.failedCount);
+      return result;
+    }
+  }
+
+  /**
+   * 解压单个文件：边读边校验并写入临时文件，校验通过才提交
+   */
+  private boolean extractEntry(ZipInputStream zipInputStream, String resourcePath, String relativePath,
+                               String expectedMd5) throws IOException {
+    OnLineCacheManager.CacheWriter writer = cacheManager.beginWrite(resourcePath, relativePath, expectedMd5);
+    if (writer == null) {
+      return false;
+    }
+
+    final boolean[] cached = new boolean[1];
+    InputStream entryStream = new CachingInputStream(new EntryInputStream(zipInputStream), writer, expectedMd5,
+      new CachingInputStream.Listener() {
+        @Override
+        public void onComplete(String path, boolean result) {
+          cached[0] = result;
+        }
+      });
+
+    try {
+      byte[] buffer = new byte[8192];
+      while (entryStream.read(buffer) != -1) {
+        // 数据在读取过程中写入缓存
+      }
+    } catch (IOException e) {
+      if (writer.isClosed()) {
+        // 校验失败，继续处理下一个文件
+        return false;
+      }
+      throw e;
+    } finally {
+      entryStream.close();
+    }
+    return cached[0];
+  }
+
+  /**
+   * 包内路径转为资源相对路径，去掉 www/ 前缀并拒绝跳出目录的路径
+   */
+  private static String toRelativePath(String entryName) {
+    if (TextUtils.isEmpty(entryName)) {
+      return null;
+    }
+
+    String name = entryName.replace('\\', '/');
+    if (name.startsWith(WWW_PREFIX)) {
+      name = name.substring(WWW_PREFIX.length());
+    }
+    if (name.startsWith("/") || name.isEmpty()) {
+      return null;
+    }
+    for (String segment : name.split("/")) {
+      if (segment.equals("..")) {
+        return null;
+      }
+    }
+    return name;
+  }
+
+  /**
+   * 单个压缩条目的输入流，关闭时只关闭当前条目而不关闭整个压缩流
+   */
+  private static class EntryInputStream extends FilterInputStream {
+    EntryInputStream(ZipInputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+      ((ZipInputStream) in).closeEntry();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.ionicframework.online.core;
+
+import android.text.TextUtils;
+
+/**
+ * 字节范围 - 解析请求头 Range 和响应头 Content-Range，只支持单个范围
+ * 范围的起止位置都是包含的，与HTTP中的写法一致
+ */
+public class ByteRange {
+  private static final String BYTES_UNIT = "bytes";
+
+  private final long start;
+  private final long end;
+  private final long totalLength;
+
+  private ByteRange(long start, long end, long totalLength) {
+    this.start = start;
+    this.end = end;
+    this.totalLength = totalLength;
+  }
+
+  /**
+   * 按资源总长度解析请求头 Range
+   * @param rangeHeader 请求头，如 "bytes=0-1023"、"bytes=1024-"、"bytes=-500"
+   * @param totalLength 资源总长度
+   * @return 解析结果，请求头不存在、格式错误或包含多个范围时返回null（按规范忽略Range返回完整内容）；
+   *         起始位置超出资源长度时返回 isSatisfiable() 为false的结果
+   */
+  public static ByteRange parse(String rangeHeader, long totalLength) {
+    if (TextUtils.isEmpty(rangeHeader) || totalLength < 0) {
+      return null;
+    }
+
+    String header = rangeHeader.trim();
+    if (!header.regionMatches(true, 0, BYTES_UNIT + "=", 0, BYTES_UNIT.length() + 1)) {
+      return null;
+    }
+
+    String spec = header.substring(BYTES_UNIT.length() + 1).trim();
+    if (spec.indexOf(',') >= 0) {
+      return null;
+    }
+
+    int dashIndex = spec.indexOf('-');
+    if (dashIndex < 0) {
+      return null;
+    }
+
+    try {
+      String startText = spec.substring(0, dashIndex).trim();
+      String endText = spec.substring(dashIndex + 1).trim();
+
+      if (startText.isEmpty()) {
+        // 后缀范围：最后N个字节
+        if (endText.isEmpty()) {
+          return null;
+        }
+        long suffixLength = Long.parseLong(endText);
+        if (suffixLength <= 0 || totalLength == 0) {
+          return new ByteRange(0, -1, totalLength);
+        }
+        return new ByteRange(Math.max(0, totalLength - suffixLength), totalLength - 1, totalLength);
+      }
+
+      long start = Long.parseLong(startText);
+      long end = endText.isEmpty() ? totalLength - 1 : Long.parseLong(endText);
+      if (start < 0 || end < start) {
+        return null;
+      }
+      if (start >= totalLength) {
+        return new ByteRange(start, -1, totalLength);
+      }
+      return new ByteRange(start, Math.min(end, totalLength - 1), totalLength);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 解析响应头 Content-Range，如 "bytes 0-1023/4096"，总长度未知时为 "bytes 0-1023/*"
+   * @return 解析结果，格式错误返回null；总长度未知时 getTotalLength() 返回-1
+   */
+  public static ByteRange parseContentRange(String contentRangeHeader) {
+    if (TextUtils.isEmpty(contentRangeHeader)) {
+      return null;
+    }
+
+    String header = contentRangeHeader.trim();
+    if (!header.regionMatches(true, 0, BYTES_UNIT + " ", 0, BYTES_UNIT.length() + 1)) {
+      return null;
+    }
+
+    String spec = header.substring(BYTES_UNIT.length() + 1).trim();
+    int dashIndex = spec.indexOf('-');
+    int slashIndex = spec.indexOf('/');
+    if (dashIndex <= 0 || slashIndex < dashIndex) {
+      return null;
+    }
+
+    try {
+      long start = Long.parseLong(spec.substring(0, dashIndex).trim());
+      long end = Long.parseLong(spec.substring(dashIndex + 1, slashIndex).trim());
+      String totalText = spec.substring(slashIndex + 1).trim();
+      long totalLength = totalText.equals("*") ? -1 : Long.parseLong(totalText);
+      if (start < 0 || end < start || (totalLength >= 0 && end >= totalLength)) {
+        return null;
+      }
+      return new ByteRange(start, end, totalLength);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 范围是否可以满足，不可满足时应返回416
+   */
+  public boolean isSatisfiable() {
+    return end >= start;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long getLength() {
+    return isSatisfiable() ? end - start + 1 : 0;
+  }
+
+  public long getTotalLength() {
+    return totalLength;
+  }
+
+  /**
+   * 生成响应头 Content-Range 的值
+   */
+  public String toContentRange() {
+    String total = totalLength >= 0 ? String.valueOf(totalLength) : "*";
+    if (!isSatisfiable()) {
+      return BYTES_UNIT + " */" + total;
+    }
+    return BYTES_UNIT + " " + start + "-" + end + "/" + total;
+  }
+}
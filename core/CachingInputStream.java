@@ -0,0 +1,144 @@
+package com.ionicframework.online.core;
+
+import android.util.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 边下载边缓存的输入流 - 网络数据同时流向WebView、临时缓存文件和MD5摘要
+ * 读到末尾且校验通过时提交临时文件；校验失败或提前关闭时丢弃临时文件
+ */
+public class CachingInputStream extends VerifyingInputStream {
+  private static final String TAG = "CachingInputStream";
+
+  // 缓存完成回调接口
+  public interface Listener {
+    void onComplete(String relativePath, boolean cached);
+  }
+
+  private final CommitCallback commitCallback;
+
+  /**
+   * @param source 网络响应流
+   * @param writer 缓存写入器
+   * @param expectedMd5 预期的文件内容MD5，为null时不比对直接缓存
+   * @param listener 缓存完成回调，可为null
+   */
+  public CachingInputStream(InputStream source, OnLineCacheManager.CacheWriter writer,
+                            String expectedMd5, Listener listener) {
+    this(new TeeInputStream(source, writer), expectedMd5, new CommitCallback(writer, listener));
+  }
+
+  private CachingInputStream(TeeInputStream tee, String expectedMd5, CommitCallback commitCallback) {
+    super(tee, expectedMd5, commitCallback);
+    this.commitCallback = commitCallback;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      if (!isFinished()) {
+        // WebView未读完就关闭了流，数据不完整，不能缓存
+        commitCallback.abandon();
+      }
+    }
+  }
+
+  /**
+   * 校验结果处理 - 通过则提交缓存，失败则丢弃
+   */
+  private static class CommitCallback implements VerifyingInputStream.Callback {
+    private final OnLineCacheManager.CacheWriter writer;
+    private final Listener listener;
+    private boolean completed;
+
+    CommitCallback(OnLineCacheManager.CacheWriter writer, Listener listener) {
+      this.writer = writer;
+      this.listener = listener;
+    }
+
+    @Override
+    public void onVerified(String actualMd5) {
+      boolean cached = writer.commit(actualMd5);
+      if (cached) {
+        Log.d(TAG, "资源缓存成功: " + writer.getRelativePath());
+      } else {
+        Log.w(TAG, "资源缓存失败: " + writer.getRelativePath());
+      }
+      complete(cached);
+    }
+
+    @Override
+    public void onMismatch(String expectedMd5, String actualMd5) {
+      Log.e(TAG, "文件完整性校验失败: " + writer.getRelativePath() +
+        ", 预期: " + expectedMd5 + ", 实际: " + actualMd5);
+      writer.abort();
+      complete(false);
+    }
+
+    void abandon() {
+      if (!completed) {
+        Log.d(TAG, "响应流未读完即关闭，放弃缓存: " + writer.getRelativePath());
+      }
+      writer.abort();
+      complete(false);
+    }
+
+    private synchronized void complete(boolean cached) {
+      if (completed) {
+        return;
+      }
+      completed = true;
+      if (listener != null) {
+        listener.onComplete(writer.getRelativePath(), cached);
+      }
+    }
+  }
+
+  /**
+   * 分流输入流 - 读取的数据同时写入缓存写入器
+   * 写缓存出错时只放弃缓存，不影响WebView继续读取
+   */
+  private static class TeeInputStream extends FilterInputStream {
+    private final OnLineCacheManager.CacheWriter writer;
+
+    TeeInputStream(InputStream in, OnLineCacheManager.CacheWriter writer) {
+      super(in);
+      this.writer = writer;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+        tee(new byte[]{(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int bytesRead = in.read(b, off, len);
+      if (bytesRead > 0) {
+        tee(b, off, bytesRead);
+      }
+      return bytesRead;
+    }
+
+    private void tee(byte[] b, int off, int len) {
+      if (writer.isClosed()) {
+        return;
+      }
+      try {
+        writer.write(b, off, len);
+      } catch (IOException e) {
+        Log.e(TAG, "写入缓存出错，放弃缓存: " + writer.getRelativePath(), e);
+        writer.abort();
+      }
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.ionicframework.online.core;
+
+import com.ionicframework.online.utils.EncryptUtils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * MD5摘要索引基类 - 哈希记录的key（文件相对路径的MD5）和value（文件内容的MD5）都按16字节原始值存储，
+ * 按key排序后二分查找；子类决定存储位置（内存中的long数组或内存映射文件）
+ * 按摘要查找（indexOf、getValueHigh/getValueLow）不创建任何对象，需要十六进制字符串时才创建
+ * 每个摘要拆成高低两个long，先比较高位再比较低位（有符号比较，排序与查找一致即可）
+ */
+public abstract class DigestIndex {
+
+  private Map<String, String> mapView;
+
+  /**
+   * 记录条数
+   */
+  public abstract int size();
+
+  protected abstract long keyHigh(int index);
+
+  protected abstract long keyLow(int index);
+
+  protected abstract long valueHigh(int index);
+
+  protected abstract long valueLow(int index);
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * 按路径摘要查找记录位置
+   * @return 记录位置，不存在时返回-1
+   */
+  public int indexOf(long keyHigh, long keyLow) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(keyHigh(mid), keyLow(mid), keyHigh, keyLow);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 按十六进制的路径MD5查找记录位置，格式不正确时返回-1
+   */
+  public int indexOf(String keyHex) {
+    if (!isHexDigest(keyHex)) {
+      return -1;
+    }
+    return indexOf(parseHexLong(keyHex, 0), parseHexLong(keyHex, 16));
+  }
+
+  /**
+   * 按原始的16字节路径MD5查找记录位置
+   */
+  public int indexOf(byte[] keyDigest) {
+    if (keyDigest == null || keyDigest.length != 16) {
+      return -1;
+    }
+    return indexOf(readLong(keyDigest, 0), readLong(keyDigest, 8));
+  }
+
+  public long getValueHigh(int index) {
+    return valueHigh(index);
+  }
+
+  public long getValueLow(int index) {
+    return valueLow(index);
+  }
+
+  /**
+   * 指定位置的内容MD5（小写十六进制）
+   */
+  public String getValue(int index) {
+    return toHex(valueHigh(index), valueLow(index));
+  }
+
+  /**
+   * 指定位置的路径MD5（小写十六进制）
+   */
+  public String getKey(int index) {
+    return toHex(keyHigh(index), keyLow(index));
+  }
+
+  /**
+   * 按十六进制的路径MD5获取内容MD5，不存在时返回null
+   */
+  public String get(String keyHex) {
+    int index = indexOf(keyHex);
+    return index >= 0 ? getValue(index) : null;
+  }
+
+  /**
+   * 按文件相对路径获取内容MD5，带不带开头的斜杠都会尝试
+   * @return 内容MD5，不存在时返回null
+   */
+  public String lookup(String relativePath) {
+    if (relativePath == null || relativePath.isEmpty() || isEmpty()) {
+      return null;
+    }
+    int index = indexOf(EncryptUtils.md5Raw(relativePath));
+    if (index < 0) {
+      String normalizedPath = relativePath.startsWith("/") ? relativePath.substring(1) : "/" + relativePath;
+      index = indexOf(EncryptUtils.md5Raw(normalizedPath));
+    }
+    return index >= 0 ? getValue(index) : null;
+  }
+
+  /**
+   * 只读的 Map 视图，供使用 Map<String, String> 哈希记录的接口使用，get 和 containsKey 走二分查找
+   */
+  public synchronized Map<String, String> asMap() {
+    if (mapView == null) {
+      mapView = new MapView(this);
+    }
+    return mapView;
+  }
+
+  /**
+   * 如果 Map 是某个索引的视图，返回该索引，否则返回null
+   */
+  public static DigestIndex unwrap(Map<String, String> map) {
+    return map instanceof MapView ? ((MapView) map).index : null;
+  }
+
+  static int compare(long high1, long low1, long high2, long low2) {
+    if (high1 != high2) {
+      return high1 < high2 ? -1 : 1;
+    }
+    if (low1 != low2) {
+      return low1 < low2 ? -1 : 1;
+    }
+    return 0;
+  }
+
+  /**
+   * 是否为32位十六进制字符串，只接受ASCII字符（Character.digit 也接受全角数字等字符）
+   */
+  static boolean isHexDigest(String hex) {
+    if (hex == null || hex.length() != 32) {
+      return false;
+    }
+    for (int i = 0; i < 32; i++) {
+      char c = hex.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 解析从 offset 开始的16个十六进制字符，调用前需确认格式正确
+   */
+  static long parseHexLong(String hex, int offset) {
+    long result = 0;
+    for (int i = offset; i < offset + 16; i++) {
+      result = (result << 4) | Character.digit(hex.charAt(i), 16);
+    }
+    return result;
+  }
+
+  static long readLong(byte[] bytes, int offset) {
+    long result = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      result = (result << 8) | (bytes[i] & 0xFF);
+    }
+    return result;
+  }
+
+  static String toHex(long high, long low) {
+    char[] chars = new char[32];
+    writeHex(chars, 0, high);
+    writeHex(chars, 16, low);
+    return new String(chars);
+  }
+
+  private static void writeHex(char[] chars, int offset, long value) {
+    for (int i = 15; i >= 0; i--) {
+      chars[offset + i] = Character.forDigit((int) (value & 0xF), 16);
+      value >>>= 4;
+    }
+  }
+
+  /**
+   * 索引的只读 Map 视图，key和value都是小写十六进制
+   */
+  private static class MapView extends AbstractMap<String, String> {
+    private final DigestIndex index;
+
+    MapView(DigestIndex index) {
+      this.index = index;
+    }
+
+    @Override
+    public int size() {
+      return index.size();
+    }
+
+    @Override
+    public String get(Object key) {
+      return key instanceof String ? index.get((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && index.indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+      return new AbstractSet<Map.Entry<String, String>>() {
+        @Override
+        public int size() {
+          return index.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+          return new Iterator<Map.Entry<String, String>>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+              return position < index.size();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+              if (position >= index.size()) {
+                throw new NoSuchElementException();
+              }
+              int current = position++;
+              return new SimpleImmutableEntry<>(index.getKey(current), index.getValue(current));
+            }
+          };
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.ionicframework.online.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 文件范围输入流 - 通过 FileChannel 的定位读取只读出文件中的一段内容，
+ * 不需要从文件开头跳过，也不影响其他读取方的文件位置
+ */
+public class FileRangeInputStream extends InputStream {
+
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final long end;
+  private long position;
+  private boolean closed;
+
+  /**
+   * @param file 文件
+   * @param start 起始位置
+   * @param length 读取长度
+   */
+  public FileRangeInputStream(File file, long start, long length) throws IOException {
+    this.randomAccessFile = new RandomAccessFile(file, "r");
+    this.channel = randomAccessFile.getChannel();
+    this.position = start;
+    this.end = start + length;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    int count = read(single, 0, 1);
+    return count == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (len == 0) {
+      return 0;
+    }
+    long remaining = end - position;
+    if (remaining <= 0) {
+      return -1;
+    }
+
+    int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+    if (count == -1) {
+      // 文件比预期的短
+      throw new IOException("文件长度不足: " + position + "/" + end);
+    }
+    position += count;
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    ensureOpen();
+    if (n <= 0) {
+      return 0;
+    }
+    long count = Math.min(n, end - position);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return (int) Math.min(Integer.MAX_VALUE, end - position);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      randomAccessFile.close();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -5,58 +5,75 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import com.china.ncbcmbs.Constants;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.ionicframework.online.api.HttpClientProvider;
 import com.ionicframework.online.model.VersionError;
 import com.ionicframework.online.model.VersionErrorType;
 import com.ionicframework.online.model.WebBSResFileInfo;
 import com.ionicframework.online.utils.EncryptUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Type;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
 
 /**
  * 哈希文件下载器 - 专门负责哈希文件的下载、缓存和解析
  * key: 文件相对路径的MD5值
  * value: 文件流的MD5值
+ * 下载的哈希记录不会自动生效，调用 activate 后才用于当前版本的校验（getExpectedMd5），
+ * 后台检查新版本时不影响正在使用的版本
+ * 哈希记录以 Md5Index 存储（每条32字节的long数组），对外返回的 Map 是索引的只读视图
+ * 下载的哈希文件同时转换成二进制索引文件（MappedMd5Index），之后启动时直接映射该文件，不再解析JSON
+ * 下载时边读边解析（JsonReader），原始内容同时写入文件缓存，不在内存中保留完整的文件内容
  */
 public class HashFileDownloader {
   private static final String TAG = "HashFileDownloader";
 
   private final Context context;
-  private final Gson gson;
   private final OkHttpClient okHttpClient;
 
-  // 内存缓存文件记录
-  private Map<String, String> fileRecordCache = new ConcurrentHashMap<>();
+  // 当前生效的文件记录
+  private volatile DigestIndex fileRecordCache = Md5Index.EMPTY;
+  // 当前生效记录的路径查找缓存，与记录一起替换
+  private volatile PathDigestCache pathDigestCache = new PathDigestCache(Md5Index.EMPTY);
+  // 当前生效记录对应的资源路径
+  private volatile String fileRecordResourcePath;
 
   // 哈希文件缓存目录
   private static final String HASH_CACHE_DIR = "hash_cache";
 
-  public HashFileDownloader(Context context) {
+  // 单例模式
+  private static HashFileDownloader instance;
+
+  public static synchronized HashFileDownloader getInstance(Context context) {
+    if (instance == null) {
+      instance = new HashFileDownloader(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private HashFileDownloader(Context context) {
     this.context = context.getApplicationContext();
-    this.gson = new Gson();
 
-    this.okHttpClient = new OkHttpClient.Builder()
-      .connectTimeout(30, TimeUnit.SECONDS)
-      .readTimeout(30, TimeUnit.SECONDS)
-      .writeTimeout(30, TimeUnit.SECONDS)
-      .build();
+    this.okHttpClient = HttpClientProvider.getInstance().getResourceClient();
   }
 
   /**
-   * 下载并解析哈希文件
+   * 下载并解析哈希文件，结果保存到本地但不生效
    * 返回格式：Map<String, String> 其中key=文件相对路径的MD5，value=文件内容的MD5
    */
   public Map<String, String> downloadHashFile(WebBSResFileInfo versionInfo) throws VersionError {
@@ -68,63 +85,134 @@ public class HashFileDownloader {
 
     Log.d(TAG, "开始处理哈希文件，资源路径: " + resourcePath);
 
-    // 1. 先检查内存缓存
-    if (!fileRecordCache.isEmpty()) {
-      Log.d(TAG, "使用内存缓存的哈希文件，记录数: " + fileRecordCache.size());
-      return fileRecordCache;
+    // 1. 先检查当前生效的记录（必须是同一资源路径的记录）
+    DigestIndex activeRecord = fileRecordCache;
+    if (!activeRecord.isEmpty() && resourcePath.equals(fileRecordResourcePath)) {
+      Log.d(TAG, "使用内存缓存的哈希文件，记录数: " + activeRecord.size());
+      return activeRecord.asMap();
     }
 
     // 2. 检查本地文件缓存
     Map<String, String> cachedRecord = loadCachedHashFile(resourcePath);
     if (cachedRecord != null) {
       Log.d(TAG, "使用本地缓存的哈希文件，记录数: " + cachedRecord.size());
-      // 存入内存缓存
-      fileRecordCache.putAll(cachedRecord);
       return cachedRecord;
     }
 
     Log.d(TAG, "缓存未命中，从服务器下载哈希文件");
 
-    // 3. 缓存不存在，从服务器下载
-    String hashFileContent = downloadHashFileContentFromServer(resourcePath);
-
-    // 4. 解析文件
-    Map<String, String> fileRecord = parseHashFileContent(hashFileContent);
+    // 3. 缓存不存在，从服务器边下载边解析，原始内容同时写入文件缓存
+    Map<String, String> fileRecord = downloadHashFileFromServer(resourcePath);
 
     Log.d(TAG, "哈希文件解析成功，记录数: " + fileRecord.size());
 
-    // 5. 存入内存缓存
-    fileRecordCache.putAll(fileRecord);
-
-    // 6. 保存文件缓存
-    saveHashFileCache(resourcePath, hashFileContent);
+    // 4. 保存二进制索引
+    saveIndexFile(resourcePath, fileRecord);
 
     return fileRecord;
   }
 
   /**
-   * 根据文件路径获取预期的MD5值
+   * 使指定资源路径的记录生效，之后 getExpectedMd5 按该记录查找
+   */
+  public synchronized void activate(String resourcePath, Map<String, String> fileRecord) {
+    // 记录是只读的索引视图时直接使用，不再复制
+    DigestIndex activeRecord = DigestIndex.unwrap(fileRecord);
+    if (activeRecord == null) {
+      activeRecord = Md5Index.fromMap(fileRecord);
+    }
+    if (activeRecord == fileRecordCache && resourcePath.equals(fileRecordResourcePath)) {
+      return;
+    }
+    fileRecordCache = activeRecord;
+    pathDigestCache = new PathDigestCache(activeRecord);
+    fileRecordResourcePath = resourcePath;
+    Log.d(TAG, "哈希记录已生效，资源路径: " + resourcePath + ", 记录数: " + activeRecord.size());
+  }
+
+  /**
+   * 从本地缓存加载指定资源路径的记录并使其生效，不访问网络
+   * @return 本地没有该资源路径的哈希文件时返回false
+   */
+  public boolean activateCached(String resourcePath) {
+    if (TextUtils.isEmpty(resourcePath)) {
+      return false;
+    }
+    if (resourcePath.equals(fileRecordResourcePath) && !fileRecordCache.isEmpty()) {
+      return true;
+    }
+    Map<String, String> cachedRecord = loadCachedHashFile(resourcePath);
+    if (cachedRecord == null) {
+      return false;
+    }
+    activate(resourcePath, cachedRecord);
+    return true;
+  }
+
+  /**
+   * 从本地缓存加载指定资源路径的记录，不生效也不访问网络
+   * @return 本地没有或已损坏时返回null
+   */
+  public Map<String, String> loadCachedRecord(String resourcePath) {
+    if (TextUtils.isEmpty(resourcePath)) {
+      return null;
+    }
+    return loadCachedHashFile(resourcePath);
+  }
+
+  /**
+   * 获取当前生效记录中的所有内容MD5
+   */
+  public Collection<String> getActiveDigests() {
+    return fileRecordCache.asMap().values();
+  }
+
+  /**
+   * 获取当前生效记录对应的资源路径
+   */
+  public String getActiveResourcePath() {
+    return fileRecordResourcePath;
+  }
+
+  /**
+   * 根据文件路径获取预期的MD5值，同一路径只在第一次查找时计算路径MD5
    * @param relativePath 文件相对路径
    * @return 预期的文件内容MD5值，如果不存在返回null
    */
   public String getExpectedMd5(String relativePath) {
-    if (TextUtils.isEmpty(relativePath) || fileRecordCache.isEmpty()) {
+    PathDigestCache lookupCache = pathDigestCache;
+    if (TextUtils.isEmpty(relativePath) || lookupCache.getIndex().isEmpty()) {
       return null;
     }
 
-    // 计算文件相对路径的MD5
-    String pathMd5 = EncryptUtils.md5(relativePath);
+    return lookupCache.get(relativePath);
+  }
 
-    // 从缓存中查找
-    String expectedMd5 = fileRecordCache.get(pathMd5);
+  /**
+   * 在指定哈希记录中查找文件的预期MD5值
+   * 路径带不带开头的斜杠都会尝试，"/build/main.js" 和 "build/main.js" 视为同一文件
+   * @param fileRecord 哈希记录，key=文件相对路径的MD5，value=文件内容的MD5
+   * @param relativePath 文件相对路径
+   * @return 预期的文件内容MD5值，如果不存在返回null
+   */
+  public static String lookupExpectedMd5(Map<String, String> fileRecord, String relativePath) {
+    if (fileRecord == null || TextUtils.isEmpty(relativePath)) {
+      return null;
+    }
+
+    // 索引视图按原始摘要查找，不生成十六进制字符串
+    DigestIndex index = DigestIndex.unwrap(fileRecord);
+    if (index != null) {
+      return index.lookup(relativePath);
+    }
+
+    // 计算文件相对路径的MD5
+    String expectedMd5 = fileRecord.get(EncryptUtils.md5(relativePath));
 
     if (expectedMd5 == null) {
-      // 尝试规范化路径后再查找（比如去掉开头的斜杠）
-      if (relativePath.startsWith("/")) {
-        String normalizedPath = relativePath.substring(1);
-        pathMd5 = EncryptUtils.md5(normalizedPath);
-        expectedMd5 = fileRecordCache.get(pathMd5);
-      }
+      // 尝试规范化路径后再查找（去掉或补上开头的斜杠）
+      String normalizedPath = relativePath.startsWith("/") ? relativePath.substring(1) : "/" + relativePath;
+      expectedMd5 = fileRecord.get(EncryptUtils.md5(normalizedPath));
     }
 
     return expectedMd5;
@@ -178,56 +266,88 @@ public class HashFileDownloader {
   }
 
   /**
-   * 从服务器下载哈希文件内容
+   * 从服务器下载哈希文件，边读边解析，原始内容同时写入文件缓存
+   * 解析完成后才用临时文件替换缓存文件，下载或解析失败时不留下不完整的缓存
    */
-  private String downloadHashFileContentFromServer(String resourcePath) throws VersionError {
-    try {
-      // 构建哈希文件URL
-      String url = String.format("%s/resources/%s/resource_hashes",
-        Constants.getEnv().getIp(), resourcePath);
+  private Map<String, String> downloadHashFileFromServer(String resourcePath) throws VersionError {
+    // 构建哈希文件URL
+    String url = String.format("%s/resources/%s/resource_hashes",
+      Constants.getEnv().getIp(), resourcePath);
 
-      Log.d(TAG, "下载哈希文件URL: " + url);
+    Log.d(TAG, "下载哈希文件URL: " + url);
 
-      Request request = new Request.Builder()
-        .url(url)
-        .get()
-        .build();
+    Request request = new Request.Builder()
+      .url(url)
+      .get()
+      .build();
 
-      Response response = okHttpClient.newCall(request).execute();
+    File targetFile = new File(getHashCacheDir(), getHashFileName(resourcePath));
+    File tempFile = new File(targetFile.getParentFile(), targetFile.getName() + ".tmp");
+    boolean saved = false;
 
-      if (!response.isSuccessful()) {
+    try (Response response = okHttpClient.newCall(request).execute()) {
+      ResponseBody responseBody = response.body();
+      if (!response.isSuccessful() || responseBody == null) {
         throw new VersionError(VersionErrorType.RESOURCE_DOWNLOAD_FAILED,
           "HTTP " + response.code());
       }
 
-      String content = response.body().string();
-      Log.d(TAG, "哈希文件下载完成，大小: " + content.length() + " 字节");
+      Md5Index index;
+      long length;
+      try (BufferedSink cacheSink = Okio.buffer(Okio.sink(tempFile));
+           BufferedSource source = Okio.buffer(new TeeSource(responseBody.source(), cacheSink))) {
+        index = readHashRecords(new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8)));
 
-      return content;
+        // 读完JSON之后的剩余内容，保证缓存文件与服务器内容一致
+        while (!source.exhausted()) {
+          source.skip(source.getBuffer().size());
+        }
+        cacheSink.flush();
+        length = tempFile.length();
+      }
+
+      if (targetFile.exists()) {
+        targetFile.delete();
+      }
+      saved = tempFile.renameTo(targetFile);
+      if (saved) {
+        Log.d(TAG, "哈希文件已缓存: " + targetFile.getAbsolutePath() + " (" + length + " bytes)");
+      } else {
+        Log.e(TAG, "缓存哈希文件失败: " + targetFile.getAbsolutePath());
+      }
+      return index.asMap();
 
     } catch (IOException e) {
       Log.e(TAG, "下载哈希文件失败", e);
       throw new VersionError(VersionErrorType.RESOURCE_DOWNLOAD_FAILED, e.getMessage());
+    } finally {
+      if (!saved) {
+        tempFile.delete();
+      }
     }
   }
 
   /**
-   * 加载缓存的哈希文件
+   * 加载缓存的哈希文件，优先映射二进制索引文件，没有时解析JSON并生成索引文件
    */
   private Map<String, String> loadCachedHashFile(String resourcePath) {
     File cacheDir = getHashCacheDir();
+    File indexFile = new File(cacheDir, getIndexFileName(resourcePath));
     File hashFile = new File(cacheDir, getHashFileName(resourcePath));
 
-    if (!hashFile.exists() || hashFile.length() == 0) {
-      Log.d(TAG, "哈希文件缓存不存在: " + hashFile.getAbsolutePath());
-      return null;
-    }
-
     try {
-      String content = readFileToString(hashFile);
-      Map<String, String> record = parseHashFileContent(content);
-      Log.d(TAG, "从缓存加载哈希文件成功，记录数: " + record.size());
-      return record;
+      DigestIndex index = HashRecordReader.load(indexFile, hashFile);
+      if (index == null) {
+        Log.d(TAG, "哈希文件缓存不存在: " + hashFile.getAbsolutePath());
+        return null;
+      }
+      if (index instanceof MappedMd5Index) {
+        Log.d(TAG, "从索引文件加载哈希记录成功，记录数: " + index.size());
+      } else {
+        Log.d(TAG, "从缓存加载哈希文件成功，记录数: " + index.size() + "，索引文件" +
+          (indexFile.exists() ? "已重新生成" : "生成失败"));
+      }
+      return index.asMap();
     } catch (Exception e) {
       Log.w(TAG, "加载缓存的哈希文件失败，将重新下载", e);
       // 删除损坏的缓存文件
@@ -239,62 +359,38 @@ public class HashFileDownloader {
   }
 
   /**
-   * 解析哈希文件内容
+   * 逐条读取哈希文件的JSON对象并写入索引，key=相对路径的MD5，value=文件内容MD5
+   * 值不是字符串的记录会被跳过
    */
-  private Map<String, String> parseHashFileContent(String content) throws VersionError {
+  private Md5Index readHashRecords(JsonReader reader) throws IOException, VersionError {
+    Md5Index.Builder builder = new Md5Index.Builder(1024);
     try {
-      if (content == null || content.trim().isEmpty()) {
-        throw new VersionError(VersionErrorType.RESOURCE_CONTENT_NULL, "文件内容为空");
-      }
-
-      // 解析JSON，key=相对路径的MD5，value=文件内容MD5
-      Type type = new TypeToken<Map<String, String>>() {}.getType();
-      Map<String, String> fileRecord = gson.fromJson(content, type);
-
-      if (fileRecord == null || fileRecord.isEmpty()) {
-        throw new VersionError(VersionErrorType.RESOURCE_PARSE_ERROR, "解析失败或文件为空");
-      }
-
-      // 打印一些示例记录用于调试
-      int count = 0;
-      for (Map.Entry<String, String> entry : fileRecord.entrySet()) {
-        if (count < 3) { // 只打印前3条记录
-          Log.d(TAG, "哈希记录示例: " + entry.getKey() + " -> " + entry.getValue());
-        }
-        count++;
+      Md5Index index = HashRecordReader.read(reader, builder);
+      Log.d(TAG, "总共解析出 " + index.size() + " 条哈希记录");
+      return index;
+    } catch (VersionError e) {
+      Log.e(TAG, "解析哈希文件失败: " + e.getMessage());
+      throw e;
+    } finally {
+      if (builder.getSkippedCount() > 0) {
+        Log.w(TAG, "跳过格式不正确的哈希记录: " + builder.getSkippedCount() + " 条");
       }
-      Log.d(TAG, "总共解析出 " + count + " 条哈希记录");
-
-      return fileRecord;
-
-    } catch (Exception e) {
-      Log.e(TAG, "解析哈希文件失败", e);
-      throw new VersionError(VersionErrorType.RESOURCE_PARSE_ERROR, e.getMessage());
     }
   }
 
   /**
-   * 保存哈希文件到缓存
+   * 把哈希记录保存为二进制索引文件，失败时下次启动仍可从JSON加载
    */
-  private void saveHashFileCache(String resourcePath, String content) {
-    File cacheDir = getHashCacheDir();
-    File targetFile = new File(cacheDir, getHashFileName(resourcePath));
-
-    // 如果已经存在，先删除
-    if (targetFile.exists()) {
-      targetFile.delete();
+  private void saveIndexFile(String resourcePath, Map<String, String> fileRecord) {
+    DigestIndex index = DigestIndex.unwrap(fileRecord);
+    if (index == null) {
+      index = Md5Index.fromMap(fileRecord);
     }
-
-    // 确保目录存在
-    targetFile.getParentFile().mkdirs();
-
-    try (FileOutputStream fos = new FileOutputStream(targetFile)) {
-      fos.write(content.getBytes("UTF-8"));
-      fos.flush();
-      Log.d(TAG, "哈希文件已缓存: " + targetFile.getAbsolutePath() +
-        " (" + content.length() + " bytes)");
-    } catch (IOException e) {
-      Log.e(TAG, "缓存哈希文件失败", e);
+    File indexFile = new File(getHashCacheDir(), getIndexFileName(resourcePath));
+    if (MappedMd5Index.write(index, indexFile)) {
+      Log.d(TAG, "索引文件已写入: " + indexFile.getName() + ", 记录数: " + index.size());
+    } else {
+      Log.e(TAG, "写入索引文件失败: " + indexFile.getName());
     }
   }
 
@@ -319,25 +415,20 @@ public class HashFileDownloader {
   }
 
   /**
-   * 读取文件内容
+   * 生成二进制索引文件名
    */
-  private String readFileToString(File file) throws IOException {
-    try (InputStream inputStream = new FileInputStream(file);
-         java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream()) {
-      byte[] buffer = new byte[1024];
-      int length;
-      while ((length = inputStream.read(buffer)) != -1) {
-        result.write(buffer, 0, length);
-      }
-      return result.toString("UTF-8");
-    }
+  private String getIndexFileName(String resourcePath) {
+    String safeName = resourcePath.replace("/", "_").replace("\\", "_");
+    return safeName + ".idx";
   }
 
   /**
    * 清除内存缓存
    */
-  public void clearMemoryCache() {
-    fileRecordCache.clear();
+  public synchronized void clearMemoryCache() {
+    fileRecordCache = Md5Index.EMPTY;
+    pathDigestCache = new PathDigestCache(Md5Index.EMPTY);
+    fileRecordResourcePath = null;
     Log.d(TAG, "哈希文件内存缓存已清除");
   }
 
@@ -421,4 +512,26 @@ public class HashFileDownloader {
   public boolean containsFile(String relativePath) {
     return getExpectedMd5(relativePath) != null;
   }
+
+  /**
+   * 把读取到的数据同时写入缓存文件
+   */
+  private static class TeeSource extends ForwardingSource {
+    private final BufferedSink cacheSink;
+
+    TeeSource(Source delegate, BufferedSink cacheSink) {
+      super(delegate);
+      this.cacheSink = cacheSink;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+      long bytesRead = super.read(sink, byteCount);
+      if (bytesRead > 0) {
+        sink.copyTo(cacheSink.buffer(), sink.size() - bytesRead, bytesRead);
+        cacheSink.emitCompleteSegments();
+      }
+      return bytesRead;
+    }
+  }
 }
@@ -0,0 +1,106 @@
+package com.ionicframework.online.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.ionicframework.online.model.VersionError;
+import com.ionicframework.online.model.VersionErrorType;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 哈希记录读取 - 流式解析哈希文件的JSON对象，加载本地缓存时优先映射二进制索引文件
+ * 不依赖Android，日志由调用方输出
+ */
+final class HashRecordReader {
+
+  private HashRecordReader() {
+  }
+
+  /**
+   * 逐条读取哈希文件的JSON对象并写入索引，key=相对路径的MD5，value=文件内容MD5
+   * 值不是字符串的记录会被跳过，格式不正确的记录计入 builder 的跳过数
+   * @return 记录不为空的索引
+   * @throws VersionError 文件内容为空、不是合法的JSON、结构不是对象或没有有效记录
+   * @throws IOException 读取数据失败（如下载中断）
+   */
+  static Md5Index read(JsonReader reader, Md5Index.Builder builder) throws IOException, VersionError {
+    try {
+      // 与原先 Gson 解析的容错程度保持一致
+      reader.setLenient(true);
+      if (isEmptyDocument(reader)) {
+        throw new VersionError(VersionErrorType.RESOURCE_CONTENT_NULL, "文件内容为空");
+      }
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String key = reader.nextName();
+        if (reader.peek() != JsonToken.STRING) {
+          reader.skipValue();
+          continue;
+        }
+        builder.add(key, reader.nextString());
+      }
+      reader.endObject();
+    } catch (IllegalStateException | MalformedJsonException e) {
+      // JSON结构不是预期的对象，或内容不是合法的JSON
+      throw new VersionError(VersionErrorType.RESOURCE_PARSE_ERROR, e.getMessage());
+    } catch (EOFException e) {
+      // 数据已完整读完但JSON没有结束；下载中断时网络层抛出的是其他IOException
+      throw new VersionError(VersionErrorType.RESOURCE_PARSE_ERROR, e.getMessage());
+    }
+
+    Md5Index index = builder.build();
+    if (index.isEmpty()) {
+      throw new VersionError(VersionErrorType.RESOURCE_PARSE_ERROR, "解析失败或文件为空");
+    }
+    return index;
+  }
+
+  /**
+   * 文档是否只有空白，JsonReader 在空文档上 peek 时抛出 EOFException 而不是返回 END_DOCUMENT
+   */
+  private static boolean isEmptyDocument(JsonReader reader) throws IOException {
+    try {
+      return reader.peek() == JsonToken.END_DOCUMENT;
+    } catch (EOFException e) {
+      return true;
+    }
+  }
+
+  /**
+   * 加载本地缓存的哈希记录：索引文件有效时直接映射；不存在、格式版本不同或已损坏时删除，
+   * 改为解析JSON文件并重新生成索引文件（生成失败不影响返回结果）
+   * @param indexFile 二进制索引文件
+   * @param jsonFile 哈希文件的JSON原文
+   * @return 从索引文件加载时为 MappedMd5Index，从JSON解析时为 Md5Index，两个文件都没有时返回null
+   * @throws VersionError JSON文件内容为空或格式不正确
+   */
+  static DigestIndex load(File indexFile, File jsonFile) throws IOException, VersionError {
+    if (indexFile.exists()) {
+      MappedMd5Index index = MappedMd5Index.open(indexFile);
+      if (index != null && !index.isEmpty()) {
+        return index;
+      }
+      indexFile.delete();
+    }
+
+    if (!jsonFile.exists() || jsonFile.length() == 0) {
+      return null;
+    }
+
+    Md5Index index;
+    try (InputStream inputStream = new FileInputStream(jsonFile)) {
+      index = read(new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)),
+        new Md5Index.Builder(1024));
+    }
+    MappedMd5Index.write(index, indexFile);
+    return index;
+  }
+}
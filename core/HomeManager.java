@@ -4,9 +4,16 @@ import android.content.Context;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.china.ncbcmbs.Constants;
+import com.ionicframework.online.api.HedgedCallExecutor;
+import com.ionicframework.online.api.HttpClientProvider;
 import com.ionicframework.online.model.VersionError;
 import com.ionicframework.online.model.WebBSResFile;
 import com.ionicframework.online.model.WebBSResFileInfo;
+import com.ionicframework.online.utils.ConnectivityMonitor;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Web资源版本管理器 - 负责获取版本信息并协调设置
@@ -18,31 +25,286 @@ public class HomeManager {
   private final VersionInfoManager versionInfoManager;
   private final PreferenceHelper preferenceHelper;
   private final OnLineCacheManager onLineCacheManager;
+  private final HashFileDownloader hashFileDownloader;
+  private final VersionSlotManager versionSlotManager;
+
+  // 资源预热（默认关闭）
+  private boolean warmUpEnabled;
+  private ResourceWarmUpManager.WarmUpCallback warmUpCallback;
 
   // 初始化回调接口
+  // 已有可用的版本而服务器返回新版本时，非强制更新的 onSuccess 返回的是正在使用的旧版本，
+  // 新版本在后台准备，文件全部缓存后下次启动时生效；强制更新时整包下载结束后返回新版本
   public interface InitializationCallback {
     void onSuccess(String version, String resourcePath);
     void onError(String error);
   }
 
+  // 后台检查新版本的回调接口（先使用缓存版本启动时）
+  public interface UpdateCallback {
+    // 服务器版本与正在使用的版本相同
+    void onUpToDate(String version);
+    // 发现新版本，开始在后台准备
+    void onUpdateAvailable(String version, String resourcePath, boolean forceUpdate);
+    // 新版本准备完成；强制更新时已立即切换（activated为true，需要重新加载页面），否则下次启动时切换
+    // complete为false时新版本的部分文件尚未缓存（仅强制更新），使用时下载
+    void onUpdateReady(String version, String resourcePath, boolean activated, boolean complete);
+    void onError(String error);
+  }
+
   public HomeManager(Context context) {
     this.context = context.getApplicationContext();
     this.versionInfoManager = VersionInfoManager.getInstance(this.context);
     this.preferenceHelper = PreferenceHelper.getInstance(this.context);
     this.onLineCacheManager = OnLineCacheManager.getInstance(this.context);
+    this.hashFileDownloader = HashFileDownloader.getInstance(this.context);
+    this.versionSlotManager = VersionSlotManager.getInstance(this.context);
+
+    // 加载上次启动保存的DNS解析结果
+    HttpClientProvider.getInstance().getDns().attach(this.context);
+    // 网络断开时请求立即失败，网络恢复后探测已熔断的源站
+    ConnectivityMonitor.getInstance(this.context).addListener(HttpClientProvider.getInstance().getCircuitBreaker());
+  }
+
+  /**
+   * 开启或关闭初始化成功后的后台资源预热
+   * @param enabled 是否开启
+   * @param callback 预热进度回调，可为null
+   */
+  public void setWarmUpEnabled(boolean enabled, ResourceWarmUpManager.WarmUpCallback callback) {
+    this.warmUpEnabled = enabled;
+    this.warmUpCallback = callback;
+    if (!enabled) {
+      // 只取消正在使用的版本的预热，后台准备新版本的下载不受影响
+      ResourceWarmUpManager.getInstance(context).cancel(onLineCacheManager.getCurrentResourcePath());
+    }
+  }
+
+  /**
+   * 开启或关闭内容寻址存储，相同内容的文件在各版本间只保存一份
+   */
+  public void setContentAddressedStorageEnabled(boolean enabled) {
+    if (enabled) {
+      onLineCacheManager.setContentAddressedStorage(new OnLineCacheManager.DigestResolver() {
+        @Override
+        public String getExpectedMd5(String relativePath) {
+          return hashFileDownloader.getExpectedMd5(relativePath);
+        }
+
+        @Override
+        public Collection<String> getExpectedDigests() {
+          return hashFileDownloader.getActiveDigests();
+        }
+      });
+    } else {
+      onLineCacheManager.setContentAddressedStorage(null);
+    }
+  }
+
+  /**
+   * 开启或关闭文本类资源的压缩存储，减少磁盘占用和读取量
+   */
+  public void setCompressedStorageEnabled(boolean enabled) {
+    onLineCacheManager.setCompressionEnabled(enabled);
+  }
+
+  /**
+   * 开启或关闭清单资源的对冲请求（默认关闭）
+   */
+  public void setHedgedRequestsEnabled(boolean enabled) {
+    HedgedCallExecutor.getInstance().setEnabled(enabled);
   }
 
   /**
    * 初始化版本信息（请求版本接口并下载hash文件）
    * 这是主要的版本获取入口
+   * 已有可用的版本时，非强制更新的新版本不会在本次生效，回调的是正在使用的旧版本
    */
   public void initialize(final InitializationCallback callback) {
     Log.i(TAG, "开始初始化，必须先查询版本信息接口...");
 
+    promoteReadyStagedVersion();
+
+    // 与版本查询并行预先建立到资源服务器的连接，首个资源请求可直接复用
+    HttpClientProvider.getInstance().preconnect(Constants.getEnv().getIp());
+
     // 必须请求最新版本信息
     requestLatestVersion(callback);
   }
 
+  /**
+   * 先使用缓存的版本初始化，立即回调，WebView不需要等待版本接口；
+   * 同时在后台请求最新版本信息，结果通过 updateCallback 返回
+   * 没有缓存的版本（如首次启动）时与 initialize 相同，不回调 updateCallback
+   */
+  public void initializeWithCachedVersion(final InitializationCallback callback, final UpdateCallback updateCallback) {
+    promoteReadyStagedVersion();
+
+    WebBSResFileInfo cachedVersionInfo = preferenceHelper.getVersionInfo();
+    if (cachedVersionInfo == null || !activateCachedVersion(cachedVersionInfo)) {
+      Log.i(TAG, "没有可用的缓存版本，等待版本信息接口");
+      HttpClientProvider.getInstance().preconnect(Constants.getEnv().getIp());
+      requestLatestVersion(callback);
+      return;
+    }
+
+    final String version = cachedVersionInfo.getResourceVersion();
+    final String resourcePath = cachedVersionInfo.getResourcePath();
+    Log.i(TAG, "使用缓存版本初始化，版本: " + version + ", 资源路径: " + resourcePath + "，后台检查新版本");
+
+    HttpClientProvider.getInstance().preconnect(Constants.getEnv().getIp());
+
+    if (callback != null) {
+      callback.onSuccess(version, resourcePath);
+    }
+
+    versionInfoManager.getVersionInfoAsync(new VersionInfoManager.VersionCallback() {
+      @Override
+      public void onSuccess(WebBSResFile result) {
+        handleBackgroundVersion(resourcePath, result, updateCallback);
+      }
+
+      @Override
+      public void onError(VersionError error) {
+        Log.w(TAG, "后台检查新版本失败: " + error.getErrorType() + ", 错误信息: " + error.getMessage());
+        if (updateCallback != null) {
+          updateCallback.onError("获取版本信息失败: " + error.getErrorType());
+        }
+      }
+    });
+  }
+
+  /**
+   * 处理后台请求到的版本信息：版本未变化时刷新保存的信息；
+   * 有新版本时在后台准备，当前使用的版本不变，文件全部缓存后下次启动时切换；强制更新的版本整包下载结束后立即切换
+   */
+  private void handleBackgroundVersion(String activeResourcePath, WebBSResFile result, final UpdateCallback updateCallback) {
+    WebBSResFileInfo versionInfo = result.getInfo();
+    String version = versionInfo.getResourceVersion();
+    String resourcePath = versionInfo.getResourcePath();
+
+    if (resourcePath.equals(activeResourcePath)) {
+      Log.i(TAG, "已是最新版本: " + version);
+      saveVersionInfo(versionInfo);
+      versionSlotManager.discardStagedVersion(activeResourcePath);
+      if (onLineCacheManager.isContentAddressedStorageEnabled()) {
+        onLineCacheManager.retainVersionBlobs(resourcePath, result.getFileRecord().values());
+      }
+      // 本地没有哈希文件时，使用刚下载的记录
+      hashFileDownloader.activate(resourcePath, result.getFileRecord());
+      if (updateCallback != null) {
+        updateCallback.onUpToDate(version);
+      }
+      if (warmUpEnabled) {
+        ResourceWarmUpManager.getInstance(context).start(resourcePath, result.getFileRecord(), warmUpCallback);
+      }
+      return;
+    }
+
+    final boolean forceUpdate = "1".equals(versionInfo.getUpdateFlag());
+    Log.i(TAG, "发现新版本: " + version + ", 资源路径: " + resourcePath + ", 强制更新: " + forceUpdate);
+    if (updateCallback != null) {
+      updateCallback.onUpdateAvailable(version, resourcePath, forceUpdate);
+    }
+
+    // 强制更新在整包下载结束或准备结束时切换，只有先发生的一方切换
+    final AtomicBoolean switched = new AtomicBoolean();
+    versionSlotManager.stage(versionInfo, result.getFileRecord(), activeResourcePath,
+      new VersionSlotManager.StagingCallback() {
+        @Override
+        public void onBundleFinished(WebBSResFileInfo stagedVersionInfo, boolean available, boolean complete) {
+          if (forceUpdate && available && switched.compareAndSet(false, true)) {
+            activateForcedUpdate(complete);
+          }
+        }
+
+        @Override
+        public void onStagingFinished(WebBSResFileInfo stagedVersionInfo, boolean complete) {
+          if (forceUpdate) {
+            if (switched.compareAndSet(false, true)) {
+              activateForcedUpdate(complete);
+            }
+            return;
+          }
+          if (updateCallback == null) {
+            return;
+          }
+          if (complete) {
+            updateCallback.onUpdateReady(stagedVersionInfo.getResourceVersion(),
+              stagedVersionInfo.getResourcePath(), false, true);
+          } else {
+            updateCallback.onError("新版本资源未能全部缓存，下次启动时继续");
+          }
+        }
+
+        private void activateForcedUpdate(boolean complete) {
+          WebBSResFileInfo activated = switchToStagedVersion(false);
+          if (updateCallback == null) {
+            return;
+          }
+          if (activated != null) {
+            updateCallback.onUpdateReady(activated.getResourceVersion(), activated.getResourcePath(), true,
+              complete);
+          } else {
+            updateCallback.onError("切换到强制更新的版本失败，继续使用当前版本");
+          }
+        }
+      });
+  }
+
+  /**
+   * 上次在后台准备完成的新版本在本次启动时生效，需在设置资源路径之前调用
+   */
+  private void promoteReadyStagedVersion() {
+    String previousResourcePath = preferenceHelper.getResourcePath();
+    WebBSResFileInfo promoted = versionSlotManager.promoteStagedVersion(true);
+    if (promoted != null) {
+      releasePreviousVersion(previousResourcePath, promoted.getResourcePath());
+    }
+  }
+
+  /**
+   * 立即切换到待生效的新版本（强制更新）
+   * @param requireComplete 是否要求新版本的文件已全部缓存
+   * @return 切换后的版本信息，失败返回null
+   */
+  private WebBSResFileInfo switchToStagedVersion(boolean requireComplete) {
+    String previousResourcePath = preferenceHelper.getResourcePath();
+    WebBSResFileInfo versionInfo = versionSlotManager.promoteStagedVersion(requireComplete);
+    if (versionInfo == null || !activateCachedVersion(versionInfo)) {
+      return null;
+    }
+    releasePreviousVersion(previousResourcePath, versionInfo.getResourcePath());
+    return versionInfo;
+  }
+
+  /**
+   * 切换版本后删除旧版本的目录，只保留正在使用和准备中的两个版本
+   */
+  private void releasePreviousVersion(String previousResourcePath, String resourcePath) {
+    if (previousResourcePath != null && !previousResourcePath.equals(resourcePath)) {
+      onLineCacheManager.deleteResourcePath(previousResourcePath);
+    }
+  }
+
+  /**
+   * 使用缓存的版本信息：设置资源路径并加载本地保存的哈希记录，不访问网络
+   */
+  private boolean activateCachedVersion(WebBSResFileInfo cachedVersionInfo) {
+    String resourcePath = cachedVersionInfo.getResourcePath();
+    if (!setResourcePathToCacheManager(resourcePath)) {
+      return false;
+    }
+    if (!hashFileDownloader.activateCached(resourcePath)) {
+      Log.w(TAG, "本地没有缓存的哈希文件，暂不校验资源完整性: " + resourcePath);
+    } else if (onLineCacheManager.isContentAddressedStorageEnabled() &&
+      !onLineCacheManager.isVersionBlobsRetained(resourcePath)) {
+      // 开启内容寻址存储之前使用的版本没有记录引用，补记录，避免其文件被垃圾回收
+      onLineCacheManager.retainVersionBlobs(resourcePath, hashFileDownloader.getActiveDigests());
+    }
+    return true;
+  }
+
   /**
    * 请求最新版本信息
    */
@@ -57,6 +319,17 @@ public class HomeManager {
 
         Log.i(TAG, "版本信息请求成功，版本: " + version + ", 资源路径: " + resourcePath);
 
+        String previousResourcePath = preferenceHelper.getResourcePath();
+
+        // 已有可用的版本时，新版本先在后台准备，不使用缓存不完整的新版本
+        WebBSResFileInfo activeVersionInfo = preferenceHelper.getVersionInfo();
+        if (previousResourcePath != null && !previousResourcePath.equals(resourcePath) &&
+          activateCachedVersion(activeVersionInfo)) {
+          stageLatestVersion(activeVersionInfo, result, callback);
+          return;
+        }
+        versionSlotManager.discardStagedVersion(resourcePath);
+
         // 1. 保存版本信息到SharedPreferences
         saveVersionInfo(versionInfo);
 
@@ -64,11 +337,28 @@ public class HomeManager {
         boolean pathSet = setResourcePathToCacheManager(resourcePath);
 
         if (pathSet) {
+          hashFileDownloader.activate(resourcePath, result.getFileRecord());
+
+          // 版本变化时，把内容未变化的文件从旧版本目录带过来，只有变化的文件需要重新下载
+          if (previousResourcePath != null && !previousResourcePath.equals(resourcePath)) {
+            onLineCacheManager.migrateFromResourcePath(previousResourcePath, result.getFileRecord());
+          }
+
+          // 内容寻址存储：记录当前版本引用的文件，避免被垃圾回收
+          if (onLineCacheManager.isContentAddressedStorageEnabled()) {
+            onLineCacheManager.retainVersionBlobs(resourcePath, result.getFileRecord().values());
+          }
+
           Log.i(TAG, "版本信息设置完成，版本: " + version + ", 资源路径: " + resourcePath);
 
           if (callback != null) {
             callback.onSuccess(version, resourcePath);
           }
+
+          // 3. 后台预热尚未缓存的资源
+          if (warmUpEnabled) {
+            ResourceWarmUpManager.getInstance(context).start(resourcePath, result.getFileRecord(), warmUpCallback);
+          }
         } else if (callback != null) {
           callback.onError("设置资源路径到缓存管理器失败");
         }
@@ -86,7 +376,7 @@ public class HomeManager {
 
           Log.w(TAG, "网络请求失败，使用缓存的版本信息: " + version + ", 资源路径: " + resourcePath);
 
-          boolean pathSet = setResourcePathToCacheManager(resourcePath);
+          boolean pathSet = activateCachedVersion(cachedVersionInfo);
           if (pathSet && callback != null) {
             // 通知上层使用缓存版本
             callback.onSuccess(version, resourcePath);
@@ -103,6 +393,55 @@ public class HomeManager {
     });
   }
 
+  /**
+   * 继续使用正在使用的版本，新版本在后台准备；强制更新时等整包下载结束后切换到新版本再回调，
+   * 其余文件在后台继续下载；服务器不提供整包时等准备结束后切换
+   */
+  private void stageLatestVersion(final WebBSResFileInfo activeVersionInfo, WebBSResFile result,
+                                  final InitializationCallback callback) {
+    final boolean forceUpdate = "1".equals(result.getInfo().getUpdateFlag());
+    Log.i(TAG, "发现新版本: " + result.getInfo().getResourceVersion() + ", 强制更新: " + forceUpdate +
+      "，继续使用版本: " + activeVersionInfo.getResourceVersion());
+
+    if (!forceUpdate && callback != null) {
+      callback.onSuccess(activeVersionInfo.getResourceVersion(), activeVersionInfo.getResourcePath());
+    }
+
+    // 整包下载结束和准备结束只有先发生的一方切换并回调
+    final AtomicBoolean switched = new AtomicBoolean();
+    versionSlotManager.stage(result.getInfo(), result.getFileRecord(), activeVersionInfo.getResourcePath(),
+      new VersionSlotManager.StagingCallback() {
+        @Override
+        public void onBundleFinished(WebBSResFileInfo stagedVersionInfo, boolean available, boolean complete) {
+          if (forceUpdate && available && switched.compareAndSet(false, true)) {
+            Log.i(TAG, "强制更新的版本整包下载结束，立即切换，其余资源在后台继续下载");
+            switchToForcedVersion(activeVersionInfo, callback);
+          }
+        }
+
+        @Override
+        public void onStagingFinished(WebBSResFileInfo stagedVersionInfo, boolean complete) {
+          if (forceUpdate && switched.compareAndSet(false, true)) {
+            switchToForcedVersion(activeVersionInfo, callback);
+          }
+        }
+      });
+  }
+
+  /**
+   * 切换到强制更新的版本并回调，切换失败时继续使用当前版本
+   */
+  private void switchToForcedVersion(WebBSResFileInfo activeVersionInfo, InitializationCallback callback) {
+    WebBSResFileInfo versionInfo = switchToStagedVersion(false);
+    if (versionInfo == null) {
+      Log.e(TAG, "切换到强制更新的版本失败，继续使用当前版本");
+      versionInfo = activeVersionInfo;
+    }
+    if (callback != null) {
+      callback.onSuccess(versionInfo.getResourceVersion(), versionInfo.getResourcePath());
+    }
+  }
+
   /**
    * 设置资源路径到OnLineCacheManager
    */
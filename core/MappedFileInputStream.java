@@ -0,0 +1,100 @@
+package com.ionicframework.online.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 内存映射文件输入流 - 大文件通过 FileChannel.map 映射后读取，
+ * 数据由系统页缓存按需加载，不经过 FileInputStream 的堆内缓冲区
+ */
+public class MappedFileInputStream extends InputStream {
+
+  private MappedByteBuffer buffer;
+
+  private MappedFileInputStream(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * 以只读方式映射整个文件
+   */
+  public static MappedFileInputStream open(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+         FileChannel channel = randomAccessFile.getChannel()) {
+      // 映射建立后关闭通道不影响已映射的内存
+      return new MappedFileInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    ensureOpen();
+    return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (len == 0) {
+      return 0;
+    }
+    int remaining = buffer.remaining();
+    if (remaining == 0) {
+      return -1;
+    }
+    int count = Math.min(len, remaining);
+    buffer.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    ensureOpen();
+    if (n <= 0) {
+      return 0;
+    }
+    int count = (int) Math.min(n, buffer.remaining());
+    buffer.position(buffer.position() + count);
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return buffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    if (buffer != null) {
+      buffer.mark();
+    }
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    ensureOpen();
+    buffer.reset();
+  }
+
+  @Override
+  public void close() {
+    // MappedByteBuffer无法主动解除映射，释放引用后由GC回收
+    buffer = null;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (buffer == null) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.ionicframework.online.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 内存映射的MD5摘要索引 - 哈希记录转换成固定格式的二进制文件后，启动时直接映射文件并二分查找，
+ * 不需要读取和解析JSON，也不会为每条记录分配对象
+ * 文件格式（大端序）：
+ *   头部16字节：魔数 "MD5I"、格式版本、记录条数、保留
+ *   key表：记录条数×16字节，按路径MD5排序
+ *   value表：记录条数×16字节，与key表一一对应
+ * 不依赖Android，打开或写入失败时只返回结果，日志由调用方输出
+ */
+public final class MappedMd5Index extends DigestIndex {
+
+  private static final int MAGIC = 0x4D443549; // "MD5I"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int DIGEST_SIZE = 16;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final int valueTableOffset;
+
+  private MappedMd5Index(ByteBuffer buffer, int size) {
+    this.buffer = buffer;
+    this.size = size;
+    this.valueTableOffset = HEADER_SIZE + size * DIGEST_SIZE;
+  }
+
+  /**
+   * 映射索引文件
+   * @return 文件不存在、格式不正确或映射失败时返回null
+   */
+  public static MappedMd5Index open(File file) {
+    if (file == null || !file.exists() || file.length() < HEADER_SIZE) {
+      return null;
+    }
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+         FileChannel channel = randomAccessFile.getChannel()) {
+      long length = channel.size();
+      // 映射在通道关闭后仍然有效
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+      // 魔数或格式版本不同
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+        return null;
+      }
+      // 写入中断或文件被截断
+      int size = buffer.getInt(8);
+      if (size < 0 || length != HEADER_SIZE + (long) size * DIGEST_SIZE * 2) {
+        return null;
+      }
+      return new MappedMd5Index(buffer, size);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 把索引写成二进制文件，先写临时文件再重命名，写入中断不会留下不完整的文件
+   * @return 写入是否成功
+   */
+  public static boolean write(DigestIndex index, File file) {
+    File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    int size = index.size();
+
+    try (DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(size);
+      out.writeInt(0);
+      for (int i = 0; i < size; i++) {
+        out.writeLong(index.keyHigh(i));
+        out.writeLong(index.keyLow(i));
+      }
+      for (int i = 0; i < size; i++) {
+        out.writeLong(index.valueHigh(i));
+        out.writeLong(index.valueLow(i));
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      return false;
+    }
+
+    if (file.exists()) {
+      file.delete();
+    }
+    if (!tempFile.renameTo(file)) {
+      tempFile.delete();
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  protected long keyHigh(int index) {
+    return buffer.getLong(HEADER_SIZE + index * DIGEST_SIZE);
+  }
+
+  @Override
+  protected long keyLow(int index) {
+    return buffer.getLong(HEADER_SIZE + index * DIGEST_SIZE + 8);
+  }
+
+  @Override
+  protected long valueHigh(int index) {
+    return buffer.getLong(valueTableOffset + index * DIGEST_SIZE);
+  }
+
+  @Override
+  protected long valueLow(int index) {
+    return buffer.getLong(valueTableOffset + index * DIGEST_SIZE + 8);
+  }
+}
@@ -0,0 +1,208 @@
+package com.ionicframework.online.core;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 内存中的MD5摘要索引 - key和value各用两个long存储在交错排列的long数组中，每条记录32字节
+ * 对比 ConcurrentHashMap<String, String>：每条记录有两个32字符的String（约2×100字节）、
+ * 一个哈希节点（约32字节）和哈希表槽位，约250字节
+ * 估算堆占用：1万条约320KB（Map约2.4MB），10万条约3.2MB（Map约24MB）
+ */
+public final class Md5Index extends DigestIndex {
+
+  public static final Md5Index EMPTY = new Md5Index(new long[0], new long[0], 0);
+
+  // keys[2i]、keys[2i+1] 为第i条记录路径MD5的高、低64位，values 同理
+  private final long[] keys;
+  private final long[] values;
+  private final int size;
+
+  private Md5Index(long[] keys, long[] values, int size) {
+    this.keys = keys;
+    this.values = values;
+    this.size = size;
+  }
+
+  /**
+   * 从 Map 形式的哈希记录构建索引，格式不正确的记录会被跳过
+   */
+  public static Md5Index fromMap(Map<String, String> fileRecord) {
+    DigestIndex index = DigestIndex.unwrap(fileRecord);
+    if (index instanceof Md5Index) {
+      return (Md5Index) index;
+    }
+
+    Builder builder = new Builder(fileRecord.size());
+    for (Map.Entry<String, String> entry : fileRecord.entrySet()) {
+      builder.add(entry.getKey(), entry.getValue());
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  protected long keyHigh(int index) {
+    return keys[index << 1];
+  }
+
+  @Override
+  protected long keyLow(int index) {
+    return keys[(index << 1) + 1];
+  }
+
+  @Override
+  protected long valueHigh(int index) {
+    return values[index << 1];
+  }
+
+  @Override
+  protected long valueLow(int index) {
+    return values[(index << 1) + 1];
+  }
+
+  /**
+   * 逐条添加记录，build 时排序并去除重复的key（保留后添加的）
+   */
+  public static class Builder {
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int skipped;
+
+    public Builder() {
+      this(16);
+    }
+
+    public Builder(int expectedSize) {
+      int capacity = Math.max(1, expectedSize) << 1;
+      this.keys = new long[capacity];
+      this.values = new long[capacity];
+    }
+
+    /**
+     * 添加一条记录
+     * @param keyHex 路径MD5（32位十六进制）
+     * @param valueHex 内容MD5（32位十六进制）
+     * @return 格式不正确时返回false
+     */
+    public boolean add(String keyHex, String valueHex) {
+      if (!isHexDigest(keyHex) || !isHexDigest(valueHex)) {
+        skipped++;
+        return false;
+      }
+      add(parseHexLong(keyHex, 0), parseHexLong(keyHex, 16), parseHexLong(valueHex, 0), parseHexLong(valueHex, 16));
+      return true;
+    }
+
+    /**
+     * 添加一条原始摘要记录
+     */
+    public void add(long keyHigh, long keyLow, long valueHigh, long valueLow) {
+      int position = size << 1;
+      if (position + 2 > keys.length) {
+        keys = Arrays.copyOf(keys, keys.length << 1);
+        values = Arrays.copyOf(values, values.length << 1);
+      }
+      keys[position] = keyHigh;
+      keys[position + 1] = keyLow;
+      values[position] = valueHigh;
+      values[position + 1] = valueLow;
+      size++;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * 因格式不正确被跳过的记录数
+     */
+    public int getSkippedCount() {
+      return skipped;
+    }
+
+    public Md5Index build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+
+      sort(0, size - 1);
+
+      // 去除重复的key，排序是不稳定的，重复时保留任意一条（正常的哈希记录不会重复）
+      int unique = 1;
+      for (int i = 1; i < size; i++) {
+        int current = i << 1;
+        int last = (unique - 1) << 1;
+        if (keys[current] == keys[last] && keys[current + 1] == keys[last + 1]) {
+          continue;
+        }
+        copy(i, unique++);
+      }
+
+      // 裁剪多余的容量
+      long[] finalKeys = keys.length == unique << 1 ? keys : Arrays.copyOf(keys, unique << 1);
+      long[] finalValues = values.length == unique << 1 ? values : Arrays.copyOf(values, unique << 1);
+      keys = null;
+      values = null;
+      return new Md5Index(finalKeys, finalValues, unique);
+    }
+
+    /**
+     * 按key排序（快速排序，较小的一侧递归，递归深度不超过 log n）
+     */
+    private void sort(int low, int high) {
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        long pivotHigh = keys[mid << 1];
+        long pivotLow = keys[(mid << 1) + 1];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (compare(keys[i << 1], keys[(i << 1) + 1], pivotHigh, pivotLow) < 0) {
+            i++;
+          }
+          while (compare(keys[j << 1], keys[(j << 1) + 1], pivotHigh, pivotLow) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        if (j - low < high - i) {
+          sort(low, j);
+          low = i;
+        } else {
+          sort(i, high);
+          high = j;
+        }
+      }
+    }
+
+    private void swap(int a, int b) {
+      int pa = a << 1;
+      int pb = b << 1;
+      for (int k = 0; k < 2; k++) {
+        long key = keys[pa + k];
+        keys[pa + k] = keys[pb + k];
+        keys[pb + k] = key;
+        long value = values[pa + k];
+        values[pa + k] = values[pb + k];
+        values[pb + k] = value;
+      }
+    }
+
+    private void copy(int from, int to) {
+      int pf = from << 1;
+      int pt = to << 1;
+      keys[pt] = keys[pf];
+      keys[pt + 1] = keys[pf + 1];
+      values[pt] = values[pf];
+      values[pt + 1] = values[pf + 1];
+    }
+  }
+}
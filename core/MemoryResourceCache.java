@@ -0,0 +1,244 @@
+package com.ionicframework.online.core;
+
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存热资源缓存 - 按字节数限制容量的分段LRU（SLRU）
+ * 新资源先进入试用区，再次命中后晋升到保护区；淘汰时优先淘汰试用区，
+ * 因此只访问一次的大文件不会把 index.html、runtime 等反复加载的资源挤出去
+ * key由资源路径和相对路径组成，切换版本后不会命中旧版本的数据
+ */
+public class MemoryResourceCache {
+  private static final String TAG = "MemoryResourceCache";
+
+  // 保护区占总容量的比例
+  private static final float PROTECTED_RATIO = 0.8f;
+
+  // 默认总容量和单个资源上限
+  public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+  public static final long DEFAULT_MAX_ENTRY_BYTES = 512L * 1024;
+
+  /**
+   * 缓存条目：已校验的资源数据和预先计算好的响应信息
+   */
+  public static class Entry {
+    private final byte[] data;
+    private final String mimeType;
+    private final String encoding;
+    private final Map<String, String> headers;
+
+    public Entry(byte[] data, String mimeType, String encoding, Map<String, String> headers) {
+      this.data = data;
+      this.mimeType = mimeType;
+      this.encoding = encoding;
+      this.headers = Collections.unmodifiableMap(new HashMap<>(headers));
+    }
+
+    public byte[] getData() {
+      return data;
+    }
+
+    public String getMimeType() {
+      return mimeType;
+    }
+
+    public String getEncoding() {
+      return encoding;
+    }
+
+    public Map<String, String> getHeaders() {
+      return headers;
+    }
+  }
+
+  // accessOrder=true，迭代顺序即从最久未访问到最近访问
+  private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long maxBytes;
+  private long maxEntryBytes;
+  private long probationBytes;
+  private long protectedBytes;
+
+  private long hitCount;
+  private long missCount;
+
+  public MemoryResourceCache(long maxBytes, long maxEntryBytes) {
+    this.maxBytes = Math.max(0, maxBytes);
+    this.maxEntryBytes = Math.max(0, maxEntryBytes);
+  }
+
+  /**
+   * 生成缓存key
+   */
+  public static String key(String resourcePath, String relativePath) {
+    return resourcePath + "|" + ResourceIndex.normalize(relativePath);
+  }
+
+  /**
+   * 获取缓存条目，命中试用区时晋升到保护区
+   */
+  public synchronized Entry get(String key) {
+    Entry entry = protectedSegment.get(key);
+    if (entry != null) {
+      hitCount++;
+      return entry;
+    }
+
+    entry = probation.remove(key);
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+
+    hitCount++;
+    probationBytes -= sizeOf(entry);
+    protectedSegment.put(key, entry);
+    protectedBytes += sizeOf(entry);
+    trimToSize();
+    return entry;
+  }
+
+  /**
+   * 放入缓存条目，新条目进入试用区
+   */
+  public synchronized void put(String key, Entry entry) {
+    if (entry == null || !isCacheable(entry.data.length)) {
+      return;
+    }
+
+    removeInternal(key);
+    probation.put(key, entry);
+    probationBytes += sizeOf(entry);
+    trimToSize();
+  }
+
+  /**
+   * 指定大小的资源是否允许进入内存缓存
+   */
+  public synchronized boolean isCacheable(long size) {
+    return maxBytes > 0 && size <= maxEntryBytes && size <= maxBytes;
+  }
+
+  /**
+   * 删除缓存条目
+   */
+  public synchronized void remove(String key) {
+    removeInternal(key);
+  }
+
+  /**
+   * 删除某个资源路径下的所有条目
+   */
+  public synchronized void removeResourcePath(String resourcePath) {
+    String prefix = resourcePath + "|";
+    removeByPrefix(probation, prefix, true);
+    removeByPrefix(protectedSegment, prefix, false);
+  }
+
+  /**
+   * 清空缓存
+   */
+  public synchronized void clear() {
+    probation.clear();
+    protectedSegment.clear();
+    probationBytes = 0;
+    protectedBytes = 0;
+    Log.d(TAG, "内存资源缓存已清除");
+  }
+
+  /**
+   * 调整容量限制
+   * @param maxBytes 总容量（字节），0表示禁用内存缓存
+   * @param maxEntryBytes 单个资源上限（字节）
+   */
+  public synchronized void setLimits(long maxBytes, long maxEntryBytes) {
+    this.maxBytes = Math.max(0, maxBytes);
+    this.maxEntryBytes = Math.max(0, maxEntryBytes);
+    trimToSize();
+    Log.i(TAG, "内存资源缓存容量: " + this.maxBytes + " bytes, 单个上限: " + this.maxEntryBytes + " bytes");
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  public synchronized long getSizeBytes() {
+    return probationBytes + protectedBytes;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  private void removeInternal(String key) {
+    Entry entry = probation.remove(key);
+    if (entry != null) {
+      probationBytes -= sizeOf(entry);
+    }
+    entry = protectedSegment.remove(key);
+    if (entry != null) {
+      protectedBytes -= sizeOf(entry);
+    }
+  }
+
+  private void removeByPrefix(LinkedHashMap<String, Entry> segment, String prefix, boolean isProbation) {
+    Iterator<Map.Entry<String, Entry>> iterator = segment.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> item = iterator.next();
+      if (item.getKey().startsWith(prefix)) {
+        if (isProbation) {
+          probationBytes -= sizeOf(item.getValue());
+        } else {
+          protectedBytes -= sizeOf(item.getValue());
+        }
+        iterator.remove();
+      }
+    }
+  }
+
+  private void trimToSize() {
+    // 保护区超限时，最久未访问的条目降级回试用区
+    long protectedMax = (long) (maxBytes * PROTECTED_RATIO);
+    while (protectedBytes > protectedMax && !protectedSegment.isEmpty()) {
+      Map.Entry<String, Entry> eldest = protectedSegment.entrySet().iterator().next();
+      protectedSegment.remove(eldest.getKey());
+      protectedBytes -= sizeOf(eldest.getValue());
+      probation.put(eldest.getKey(), eldest.getValue());
+      probationBytes += sizeOf(eldest.getValue());
+    }
+
+    // 总量超限时，优先淘汰试用区中最久未访问的条目
+    while (probationBytes + protectedBytes > maxBytes) {
+      LinkedHashMap<String, Entry> segment = !probation.isEmpty() ? probation : protectedSegment;
+      if (segment.isEmpty()) {
+        break;
+      }
+      Map.Entry<String, Entry> eldest = segment.entrySet().iterator().next();
+      segment.remove(eldest.getKey());
+      if (segment == probation) {
+        probationBytes -= sizeOf(eldest.getValue());
+      } else {
+        protectedBytes -= sizeOf(eldest.getValue());
+      }
+    }
+  }
+
+  private static long sizeOf(Entry entry) {
+    return entry.data.length;
+  }
+}
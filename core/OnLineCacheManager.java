@@ -1,15 +1,32 @@
 package com.ionicframework.online.core;
 
 import android.content.Context;
+import android.os.Build;
+import android.system.Os;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.ionicframework.online.utils.EncryptUtils;
+import com.ionicframework.online.utils.MimeTypeUtils;
+
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Web资源缓存管理器 - 纯文件缓存操作
@@ -18,10 +35,56 @@ public class OnLineCacheManager {
 
   private static final String TAG = "OnLineCacheManager";
   private static final String CACHE_ROOT_DIR_NAME = "webview_cache";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String BLOB_DIR_NAME = "blobs";
+
+  // 压缩存储的文件后缀，不使用 .gz 以免与资源本身的 .gz 文件冲突
+  private static final String COMPRESSED_FILE_SUFFIX = ".cgz";
+
+  // Range请求部分下载的文件后缀
+  private static final String PARTIAL_FILE_SUFFIX = ".part";
+
+  // 默认内存映射阈值
+  private static final long DEFAULT_MEMORY_MAP_THRESHOLD = 1024 * 1024;
+
+  // 哈希记录中没有的资源默认重新确认间隔
+  private static final long DEFAULT_REVALIDATION_TTL_MS = 10 * 60 * 1000;
+
+  // 内容寻址存储的摘要解析接口，根据相对路径返回当前版本的预期内容MD5
+  public interface DigestResolver {
+    String getExpectedMd5(String relativePath);
+
+    // 当前版本哈希记录中的所有内容MD5，垃圾回收时即使没有记录引用也不删除
+    Collection<String> getExpectedDigests();
+  }
 
   private final File cacheRootDir;
+  private final BlobStore blobStore;
   private String currentResourcePath;
   private File currentResourceDir;
+  private ResourceIndex currentResourceIndex;
+
+  // 未生效版本（如后台准备中的新版本）的校验索引，设置为当前版本时沿用同一实例，避免丢失未保存的记录
+  private final Map<String, ResourceIndex> inactiveIndexes = new HashMap<>();
+
+  // 达到该大小的文件使用内存映射读取
+  private volatile long memoryMapThreshold = DEFAULT_MEMORY_MAP_THRESHOLD;
+
+  // 哈希记录中没有的资源超过该时间后向服务器重新确认
+  private volatile long revalidationTtlMs = DEFAULT_REVALIDATION_TTL_MS;
+
+  // 内容寻址存储开启时不为null
+  private volatile DigestResolver digestResolver;
+
+  // 文本类资源是否压缩存储
+  private volatile boolean compressionEnabled;
+
+  // 正在使用的部分下载文件，同一文件的多个Range请求共用一个实例
+  private final Map<String, PartialResourceFile> partialFiles = new HashMap<>();
+
+  // 内存热资源缓存，位于磁盘缓存之前
+  private final MemoryResourceCache memoryCache =
+    new MemoryResourceCache(MemoryResourceCache.DEFAULT_MAX_BYTES, MemoryResourceCache.DEFAULT_MAX_ENTRY_BYTES);
 
   // 单例模式
   private static OnLineCacheManager instance;
@@ -35,6 +98,7 @@ public class OnLineCacheManager {
 
   private OnLineCacheManager(Context context) {
     this.cacheRootDir = new File(context.getFilesDir(), CACHE_ROOT_DIR_NAME);
+    this.blobStore = new BlobStore(new File(cacheRootDir, BLOB_DIR_NAME));
 
     // 确保根目录存在
     if (!cacheRootDir.exists()) {
@@ -60,22 +124,173 @@ public class OnLineCacheManager {
       return false;
     }
 
-    this.currentResourcePath = resourcePath;
-    this.currentResourceDir = new File(cacheRootDir, resourcePath);
-
-    if (!currentResourceDir.exists()) {
-      boolean created = currentResourceDir.mkdirs();
+    File resourceDir = new File(cacheRootDir, resourcePath);
+    if (!resourceDir.exists()) {
+      boolean created = resourceDir.mkdirs();
       if (!created) {
-        Log.e(TAG, "创建资源目录失败: " + currentResourceDir.getAbsolutePath());
+        Log.e(TAG, "创建资源目录失败: " + resourceDir.getAbsolutePath());
         return false;
       }
-      Log.i(TAG, "创建资源目录: " + currentResourceDir.getAbsolutePath());
+      Log.i(TAG, "创建资源目录: " + resourceDir.getAbsolutePath());
+    }
+
+    synchronized (inactiveIndexes) {
+      ResourceIndex previousIndex = this.currentResourceIndex;
+      if (previousIndex == null || !resourcePath.equals(currentResourcePath)) {
+        if (previousIndex != null) {
+          // 旧版本之后可能作为迁移来源，立即保存
+          previousIndex.flush();
+        }
+        this.currentResourceIndex = takeResourceIndex(resourcePath, resourceDir);
+      }
+      this.currentResourcePath = resourcePath;
+      this.currentResourceDir = resourceDir;
     }
 
     Log.i(TAG, "资源路径设置为: " + resourcePath);
     return true;
   }
 
+  /**
+   * 取出未生效版本已加载的索引，没有时从磁盘加载
+   */
+  private ResourceIndex takeResourceIndex(String resourcePath, File resourceDir) {
+    synchronized (inactiveIndexes) {
+      ResourceIndex index = inactiveIndexes.remove(resourcePath);
+      return index != null ? index : ResourceIndex.load(resourceDir);
+    }
+  }
+
+  /**
+   * 获取指定版本的索引，当前版本返回当前索引
+   */
+  private ResourceIndex getResourceIndex(String resourcePath) {
+    synchronized (inactiveIndexes) {
+      if (resourcePath.equals(currentResourcePath) && currentResourceIndex != null) {
+        return currentResourceIndex;
+      }
+      ResourceIndex index = inactiveIndexes.get(resourcePath);
+      if (index == null) {
+        index = ResourceIndex.load(new File(cacheRootDir, resourcePath));
+        inactiveIndexes.put(resourcePath, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * 获取当前资源路径
+   */
+  public String getCurrentResourcePath() {
+    return currentResourcePath;
+  }
+
+  /**
+   * 获取内存热资源缓存
+   */
+  public MemoryResourceCache getMemoryCache() {
+    return memoryCache;
+  }
+
+  /**
+   * 设置内存热资源缓存容量
+   * @param maxBytes 总容量（字节），0表示禁用内存缓存
+   * @param maxEntryBytes 单个资源上限（字节）
+   */
+  public void setMemoryCacheLimits(long maxBytes, long maxEntryBytes) {
+    memoryCache.setLimits(maxBytes, maxEntryBytes);
+  }
+
+  /**
+   * 开启或关闭内容寻址存储
+   * 开启后哈希记录中有的文件按内容MD5保存在 blobs 目录，相同内容只保存一份，切换版本时无需迁移；
+   * 哈希记录中没有的文件仍按相对路径保存在版本目录
+   * @param resolver 摘要解析器，为null时关闭
+   */
+  public void setContentAddressedStorage(DigestResolver resolver) {
+    this.digestResolver = resolver;
+    Log.i(TAG, "内容寻址存储: " + (resolver != null ? "开启" : "关闭"));
+  }
+
+  /**
+   * 是否开启了内容寻址存储
+   */
+  public boolean isContentAddressedStorageEnabled() {
+    return digestResolver != null;
+  }
+
+  /**
+   * 开启或关闭文本类资源（html/js/css/json/svg/xml）的压缩存储
+   * 开启后新写入的文本类资源以gzip格式保存，读取时边读边解压，已有的未压缩文件仍可正常读取；
+   * 校验索引与哈希记录中的MD5始终针对解压后的内容
+   */
+  public void setCompressionEnabled(boolean enabled) {
+    this.compressionEnabled = enabled;
+    Log.i(TAG, "压缩存储: " + (enabled ? "开启" : "关闭"));
+  }
+
+  /**
+   * 缓存文件是否为压缩存储
+   */
+  public static boolean isCompressedFile(File file) {
+    return file != null && file.getName().endsWith(COMPRESSED_FILE_SUFFIX);
+  }
+
+  /**
+   * 返回存在的缓存文件，未压缩和压缩存储的都检查，都不存在返回null
+   */
+  private static File findStoredFile(File file) {
+    if (file.exists()) {
+      return file;
+    }
+    File compressedFile = new File(file.getPath() + COMPRESSED_FILE_SUFFIX);
+    return compressedFile.exists() ? compressedFile : null;
+  }
+
+  /**
+   * 打开缓存文件的原始内容，压缩存储的文件边读边解压
+   */
+  private static InputStream openStoredFile(File file) throws IOException {
+    InputStream inputStream = new FileInputStream(file);
+    if (!isCompressedFile(file)) {
+      return inputStream;
+    }
+    try {
+      return new GZIPInputStream(inputStream, 8192);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * 记录版本引用的内容MD5，未被任何版本引用的文件会在垃圾回收时删除
+   * @param resourcePath 资源路径
+   * @param digests 该版本哈希记录中的所有内容MD5
+   */
+  public boolean retainVersionBlobs(String resourcePath, Collection<String> digests) {
+    return blobStore.retainVersion(resourcePath, digests);
+  }
+
+  /**
+   * 版本引用的内容MD5是否已记录
+   */
+  public boolean isVersionBlobsRetained(String resourcePath) {
+    return blobStore.isVersionRetained(resourcePath);
+  }
+
+  /**
+   * 内容寻址存储中的文件，未开启或哈希记录中没有时返回null（不保证存在）
+   */
+  private File resolveBlobFile(String relativePath) {
+    DigestResolver resolver = digestResolver;
+    if (resolver == null) {
+      return null;
+    }
+    String md5 = resolver.getExpectedMd5(relativePath);
+    return md5 != null ? blobStore.getBlobFile(md5) : null;
+  }
+
   /**
    * 根据相对路径获取本地缓存文件
    * @param relativePath 相对路径，如 "www/build/main.js"
@@ -91,14 +306,17 @@ public class OnLineCacheManager {
       return currentResourceDir;
     }
 
-    // 构建完整的文件路径
-    File cachedFile = new File(currentResourceDir, relativePath);
-
-    if (!cachedFile.exists()) {
-      return null;
+    // 内容寻址存储中有则优先使用
+    File blobFile = resolveBlobFile(relativePath);
+    if (blobFile != null) {
+      File storedBlobFile = findStoredFile(blobFile);
+      if (storedBlobFile != null) {
+        return storedBlobFile;
+      }
     }
 
-    return cachedFile;
+    // 构建完整的文件路径
+    return findStoredFile(new File(currentResourceDir, relativePath));
   }
 
   /**
@@ -108,47 +326,38 @@ public class OnLineCacheManager {
    * @return 是否缓存成功
    */
   public boolean cacheResource(String relativePath, InputStream inputStream) {
-    if (currentResourceDir == null) {
-      Log.e(TAG, "资源路径未设置，无法缓存资源");
-      return false;
-    }
-
-    if (TextUtils.isEmpty(relativePath)) {
-      Log.e(TAG, "相对路径不能为空");
-      return false;
-    }
-
-    // 确保目录存在
-    File targetFile = new File(currentResourceDir, relativePath);
-    File parentDir = targetFile.getParentFile();
-
-    if (parentDir != null && !parentDir.exists()) {
-      if (!parentDir.mkdirs()) {
-        Log.e(TAG, "创建目录失败: " + parentDir.getAbsolutePath());
-        return false;
+    CacheWriter writer = beginWrite(relativePath);
+    if (writer == null) {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        Log.e(TAG, "关闭输入流出错", e);
       }
+      return false;
     }
 
-    // 写入文件
-    try (FileOutputStream fos = new FileOutputStream(targetFile)) {
+    // 写入临时文件，完成后再替换为正式文件
+    try {
       byte[] buffer = new byte[8192];
       int bytesRead;
       long totalBytes = 0;
 
       while ((bytesRead = inputStream.read(buffer)) != -1) {
-        fos.write(buffer, 0, bytesRead);
+        writer.write(buffer, 0, bytesRead);
         totalBytes += bytesRead;
       }
 
+      if (!writer.commit()) {
+        return false;
+      }
+
       Log.d(TAG, "资源已缓存: " + relativePath + " (" + totalBytes + " bytes)");
       return true;
 
     } catch (IOException e) {
       Log.e(TAG, "缓存资源出错: " + relativePath, e);
-      // 如果写入失败，删除可能损坏的文件
-      if (targetFile.exists()) {
-        targetFile.delete();
-      }
+      // 如果写入失败，删除临时文件，正式文件保持不变
+      writer.abort();
       return false;
     } finally {
       try {
@@ -159,6 +368,159 @@ public class OnLineCacheManager {
     }
   }
 
+  /**
+   * 开始写入缓存资源
+   * 数据先写入目标文件同目录下的临时文件，调用commit后才重命名为正式文件，
+   * 因此读取方永远不会看到写了一半的缓存文件
+   * @param relativePath 相对路径，如 "www/build/main.js"
+   * @return 写入器，失败返回null
+   */
+  public CacheWriter beginWrite(String relativePath) {
+    if (currentResourceDir == null) {
+      Log.e(TAG, "资源路径未设置，无法缓存资源");
+      return null;
+    }
+
+    if (TextUtils.isEmpty(relativePath)) {
+      Log.e(TAG, "相对路径不能为空");
+      return null;
+    }
+
+    // 确保目录存在，内容寻址存储开启时写入 blobs 目录
+    File plainFile = resolvePlainFile(relativePath);
+    File compressedFile = new File(plainFile.getPath() + COMPRESSED_FILE_SUFFIX);
+    boolean compress = compressionEnabled && MimeTypeUtils.isCompressible(relativePath);
+    File targetFile = compress ? compressedFile : plainFile;
+    File parentDir = targetFile.getParentFile();
+
+    if (parentDir != null && !parentDir.exists()) {
+      if (!parentDir.mkdirs() && !parentDir.exists()) {
+        Log.e(TAG, "创建目录失败: " + parentDir.getAbsolutePath());
+        return null;
+      }
+    }
+
+    try {
+      File tempFile = File.createTempFile(targetFile.getName() + ".", TEMP_FILE_SUFFIX, parentDir);
+      // 提交后删除另一种存储格式的旧文件，避免读取到过期内容
+      return new CacheWriter(relativePath, targetFile, compress ? plainFile : compressedFile,
+        tempFile, compress, currentResourceIndex);
+    } catch (IOException e) {
+      Log.e(TAG, "创建临时缓存文件失败: " + relativePath, e);
+      return null;
+    }
+  }
+
+  /**
+   * 未压缩存储时的缓存文件位置，内容寻址存储开启时位于 blobs 目录（不保证存在）
+   */
+  private File resolvePlainFile(String relativePath) {
+    File blobFile = resolveBlobFile(relativePath);
+    return blobFile != null ? blobFile : new File(currentResourceDir, relativePath);
+  }
+
+  /**
+   * 开始写入指定版本的缓存资源，版本不必是当前版本（用于后台准备新版本）
+   * @param resourcePath 资源路径
+   * @param relativePath 相对路径
+   * @param expectedMd5 哈希记录中的内容MD5，内容寻址存储开启时决定写入的文件，可为null
+   * @return 写入器，失败返回null
+   */
+  public CacheWriter beginWrite(String resourcePath, String relativePath, String expectedMd5) {
+    if (TextUtils.isEmpty(resourcePath) || TextUtils.isEmpty(relativePath)) {
+      Log.e(TAG, "资源路径和相对路径不能为空");
+      return null;
+    }
+    if (resourcePath.equals(currentResourcePath)) {
+      return beginWrite(relativePath);
+    }
+
+    File plainFile = getVersionPlainFile(resourcePath, relativePath, expectedMd5);
+    File compressedFile = new File(plainFile.getPath() + COMPRESSED_FILE_SUFFIX);
+    boolean compress = compressionEnabled && MimeTypeUtils.isCompressible(relativePath);
+    File targetFile = compress ? compressedFile : plainFile;
+    File parentDir = targetFile.getParentFile();
+
+    if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs() && !parentDir.exists()) {
+      Log.e(TAG, "创建目录失败: " + parentDir.getAbsolutePath());
+      return null;
+    }
+
+    try {
+      File tempFile = File.createTempFile(targetFile.getName() + ".", TEMP_FILE_SUFFIX, parentDir);
+      return new CacheWriter(relativePath, targetFile, compress ? plainFile : compressedFile,
+        tempFile, compress, getResourceIndex(resourcePath));
+    } catch (IOException e) {
+      Log.e(TAG, "创建临时缓存文件失败: " + resourcePath + "/" + relativePath, e);
+      return null;
+    }
+  }
+
+  /**
+   * 指定版本的文件是否已校验通过且未被修改
+   */
+  public boolean isVerified(String resourcePath, String relativePath, String expectedMd5) {
+    if (TextUtils.isEmpty(resourcePath) || expectedMd5 == null) {
+      return false;
+    }
+    if (resourcePath.equals(currentResourcePath)) {
+      return isVerified(relativePath, expectedMd5);
+    }
+    File storedFile = findStoredFile(getVersionPlainFile(resourcePath, relativePath, expectedMd5));
+    return getResourceIndex(resourcePath).isVerified(relativePath, storedFile, expectedMd5);
+  }
+
+  /**
+   * 统计指定版本已缓存并校验通过的哈希记录条数，等于记录总数时该版本可以完全离线使用
+   * 内容寻址存储开启时按内容MD5检查 blobs 目录，否则按版本索引中记录的路径和MD5检查
+   * @param resourcePath 资源路径
+   * @param fileRecord 该版本的哈希记录，key=文件相对路径的MD5，value=文件内容的MD5
+   * @return 已覆盖的记录条数
+   */
+  public int countCoveredEntries(String resourcePath, Map<String, String> fileRecord) {
+    if (TextUtils.isEmpty(resourcePath) || fileRecord == null || fileRecord.isEmpty()) {
+      return 0;
+    }
+
+    if (digestResolver != null) {
+      int covered = 0;
+      for (String md5 : fileRecord.values()) {
+        if (md5 != null && findStoredFile(blobStore.getBlobFile(md5)) != null) {
+          covered++;
+        }
+      }
+      return covered;
+    }
+
+    File resourceDir = new File(cacheRootDir, resourcePath);
+    ResourceIndex index = getResourceIndex(resourcePath);
+    Set<String> coveredKeys = new HashSet<>();
+    for (String relativePath : index.relativePaths()) {
+      ResourceIndex.Entry entry = index.get(relativePath);
+      if (entry == null || entry.getMd5() == null ||
+        !entry.matches(findStoredFile(new File(resourceDir, relativePath)))) {
+        continue;
+      }
+      // 哈希记录中的路径可能带或不带开头的斜杠
+      for (String key : new String[]{EncryptUtils.md5(relativePath), EncryptUtils.md5("/" + relativePath)}) {
+        if (entry.getMd5().equalsIgnoreCase(fileRecord.get(key))) {
+          coveredKeys.add(key);
+        }
+      }
+    }
+    return coveredKeys.size();
+  }
+
+  /**
+   * 指定版本未压缩存储时的缓存文件位置（不保证存在）
+   */
+  private File getVersionPlainFile(String resourcePath, String relativePath, String expectedMd5) {
+    if (digestResolver != null && expectedMd5 != null) {
+      return blobStore.getBlobFile(expectedMd5);
+    }
+    return new File(new File(cacheRootDir, resourcePath), relativePath);
+  }
+
   /**
    * 缓存从字节数组获取的资源
    */
@@ -193,14 +555,276 @@ public class OnLineCacheManager {
       return null;
     }
 
+    InputStream inputStream = null;
+
+    // 大文件（视频、wasm等）使用内存映射读取
+    if (cachedFile.length() >= memoryMapThreshold) {
+      try {
+        inputStream = MappedFileInputStream.open(cachedFile);
+      } catch (IOException e) {
+        Log.w(TAG, "内存映射缓存文件失败，改用普通读取: " + relativePath, e);
+      }
+    }
+
+    try {
+      if (inputStream == null) {
+        inputStream = new FileInputStream(cachedFile);
+      }
+      // WebView不会对拦截返回的响应按 Content-Encoding 解压，压缩存储的文件在这里解压
+      return isCompressedFile(cachedFile) ? new GZIPInputStream(inputStream, 8192) : inputStream;
+    } catch (IOException e) {
+      Log.e(TAG, "打开缓存文件出错: " + relativePath, e);
+      if (inputStream != null) {
+        try {
+          inputStream.close();
+        } catch (IOException closeException) {
+          Log.e(TAG, "关闭输入流出错", closeException);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * 获取已缓存资源解压后的内容长度，未缓存返回-1
+   * 压缩存储的文件从gzip尾部读取原始长度（取模2^32，缓存的文本资源不会超过该大小）
+   */
+  public long getCachedContentLength(String relativePath) {
+    File cachedFile = getCachedFile(relativePath);
+    if (cachedFile == null) {
+      return -1;
+    }
+    if (!isCompressedFile(cachedFile)) {
+      return cachedFile.length();
+    }
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(cachedFile, "r")) {
+      long fileLength = randomAccessFile.length();
+      if (fileLength < 4) {
+        return -1;
+      }
+      randomAccessFile.seek(fileLength - 4);
+      byte[] trailer = new byte[4];
+      randomAccessFile.readFully(trailer);
+      return (trailer[0] & 0xffL) | (trailer[1] & 0xffL) << 8 |
+        (trailer[2] & 0xffL) << 16 | (trailer[3] & 0xffL) << 24;
+    } catch (IOException e) {
+      Log.e(TAG, "读取压缩文件长度出错: " + relativePath, e);
+      return -1;
+    }
+  }
+
+  /**
+   * 获取已缓存资源中一段内容的输入流，使用定位读取，不从文件开头跳过
+   * @param start 起始位置
+   * @param length 读取长度
+   * @return 输入流，未缓存或压缩存储（无法定位读取）时返回null
+   */
+  public InputStream getCachedResourceRange(String relativePath, long start, long length) {
+    File cachedFile = getCachedFile(relativePath);
+    if (cachedFile == null || isCompressedFile(cachedFile)) {
+      return null;
+    }
+
     try {
-      return new FileInputStream(cachedFile);
+      return new FileRangeInputStream(cachedFile, start, length);
     } catch (IOException e) {
       Log.e(TAG, "打开缓存文件出错: " + relativePath, e);
       return null;
     }
   }
 
+  /**
+   * 完整读取缓存文件并校验MD5，校验通过记录到校验索引，失败时删除缓存文件
+   * Range请求只读取文件的一部分，无法边读边校验，首次命中时先整体校验一次
+   * @return 是否校验通过
+   */
+  public boolean verifyCachedFile(String relativePath, String expectedMd5) {
+    InputStream inputStream = getCachedResourceAsStream(relativePath);
+    if (inputStream == null) {
+      return false;
+    }
+
+    String actualMd5;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1) {
+        digest.update(buffer, 0, bytesRead);
+      }
+      actualMd5 = EncryptUtils.bytesToHex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      Log.e(TAG, "校验缓存文件出错: " + relativePath, e);
+      return false;
+    } finally {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        Log.e(TAG, "关闭输入流出错", e);
+      }
+    }
+
+    if (!actualMd5.equalsIgnoreCase(expectedMd5)) {
+      Log.w(TAG, "缓存文件完整性校验失败: " + relativePath + ", 预期: " + expectedMd5 + ", 实际: " + actualMd5);
+      deleteCachedFile(relativePath);
+      return false;
+    }
+
+    markVerified(relativePath, actualMd5);
+    return true;
+  }
+
+  /**
+   * 获取资源的部分下载文件，用于Range请求的缓存
+   * @return 部分下载文件，资源路径未设置时返回null
+   */
+  public synchronized PartialResourceFile openPartialFile(String relativePath) {
+    if (currentResourceDir == null || TextUtils.isEmpty(relativePath)) {
+      return null;
+    }
+
+    File partFile = new File(currentResourceDir, ResourceIndex.normalize(relativePath) + PARTIAL_FILE_SUFFIX);
+    String key = partFile.getAbsolutePath();
+    PartialResourceFile partialFile = partialFiles.get(key);
+    if (partialFile == null) {
+      partialFile = PartialResourceFile.load(partFile);
+      partialFiles.put(key, partialFile);
+    }
+    return partialFile;
+  }
+
+  /**
+   * 将下载完整并已校验的部分下载文件提交为正式缓存文件
+   * 不需要压缩存储时直接重命名，否则按正常写入流程压缩保存
+   * @param verifiedMd5 已校验通过的文件内容MD5，为null时不记录到校验索引
+   * @return 是否提交成功
+   */
+  public boolean commitPartialFile(String relativePath, PartialResourceFile partialFile, String verifiedMd5) {
+    if (currentResourceDir == null || !partialFile.isComplete()) {
+      return false;
+    }
+
+    boolean success;
+    if (compressionEnabled && MimeTypeUtils.isCompressible(relativePath)) {
+      CacheWriter writer = beginWrite(relativePath);
+      success = false;
+      if (writer != null) {
+        try (InputStream inputStream = new FileInputStream(partialFile.getFile())) {
+          byte[] buffer = new byte[8192];
+          int bytesRead;
+          while ((bytesRead = inputStream.read(buffer)) != -1) {
+            writer.write(buffer, 0, bytesRead);
+          }
+          success = writer.commit(verifiedMd5);
+        } catch (IOException e) {
+          Log.e(TAG, "提交部分下载文件出错: " + relativePath, e);
+          writer.abort();
+        }
+      }
+      partialFile.delete();
+    } else {
+      File targetFile = resolvePlainFile(relativePath);
+      File parentDir = targetFile.getParentFile();
+      if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs() && !parentDir.exists()) {
+        Log.e(TAG, "创建目录失败: " + parentDir.getAbsolutePath());
+        return false;
+      }
+      success = partialFile.moveTo(targetFile);
+      if (success) {
+        File compressedFile = new File(targetFile.getPath() + COMPRESSED_FILE_SUFFIX);
+        if (compressedFile.exists()) {
+          compressedFile.delete();
+        }
+        if (currentResourceIndex != null) {
+          currentResourceIndex.markCached(relativePath, targetFile, verifiedMd5, null, null);
+        }
+      }
+    }
+
+    synchronized (this) {
+      partialFiles.remove(partialFile.getFile().getAbsolutePath());
+    }
+    Log.i(TAG, "部分下载文件" + (success ? "已提交: " : "提交失败: ") + relativePath);
+    return success;
+  }
+
+  /**
+   * 设置使用内存映射读取的文件大小阈值
+   * @param thresholdBytes 文件大小达到该值时使用内存映射，小于等于0表示关闭
+   */
+  public void setMemoryMapThreshold(long thresholdBytes) {
+    this.memoryMapThreshold = thresholdBytes > 0 ? thresholdBytes : Long.MAX_VALUE;
+  }
+
+  /**
+   * 缓存文件是否已校验通过且自校验后未被修改
+   * @param relativePath 相对路径
+   * @param expectedMd5 预期的文件内容MD5
+   */
+  public boolean isVerified(String relativePath, String expectedMd5) {
+    ResourceIndex index = currentResourceIndex;
+    if (index == null) {
+      return false;
+    }
+    return index.isVerified(relativePath, getCachedFile(relativePath), expectedMd5);
+  }
+
+  /**
+   * 记录缓存文件已校验通过
+   */
+  public void markVerified(String relativePath, String md5) {
+    ResourceIndex index = currentResourceIndex;
+    if (index != null) {
+      index.markVerified(relativePath, getCachedFile(relativePath), md5);
+    }
+  }
+
+  /**
+   * 设置哈希记录中没有的资源的重新确认间隔
+   * @param ttlMs 缓存超过该时间后发送条件请求确认，0表示每次都确认，小于0表示不确认
+   */
+  public void setRevalidationTtl(long ttlMs) {
+    this.revalidationTtlMs = ttlMs >= 0 ? ttlMs : Long.MAX_VALUE;
+  }
+
+  /**
+   * 缓存文件是否需要向服务器重新确认（只用于哈希记录中没有的资源）
+   * 没有索引记录的旧缓存文件按文件修改时间计算
+   */
+  public boolean isRevalidationDue(String relativePath) {
+    File cachedFile = getCachedFile(relativePath);
+    if (cachedFile == null) {
+      return false;
+    }
+
+    ResourceIndex.Entry entry = getIndexEntry(relativePath);
+    long validatedAt = entry != null && entry.getValidatedAt() > 0 ? entry.getValidatedAt() : cachedFile.lastModified();
+    return System.currentTimeMillis() - validatedAt >= revalidationTtlMs;
+  }
+
+  /**
+   * 获取缓存文件的索引记录，文件记录后被修改过时返回null
+   */
+  public ResourceIndex.Entry getIndexEntry(String relativePath) {
+    ResourceIndex index = currentResourceIndex;
+    if (index == null) {
+      return null;
+    }
+    ResourceIndex.Entry entry = index.get(relativePath);
+    return entry != null && entry.matches(getCachedFile(relativePath)) ? entry : null;
+  }
+
+  /**
+   * 记录服务器已确认缓存文件未变化
+   */
+  public void markRevalidated(String relativePath) {
+    ResourceIndex index = currentResourceIndex;
+    if (index != null) {
+      index.markRevalidated(relativePath, getCachedFile(relativePath));
+    }
+  }
+
   /**
    * 删除指定资源文件
    * @param relativePath 相对路径
@@ -217,13 +841,25 @@ public class OnLineCacheManager {
       return false;
     }
 
-    File targetFile = new File(currentResourceDir, relativePath);
-    if (!targetFile.exists()) {
+    if (currentResourceIndex != null) {
+      currentResourceIndex.remove(relativePath);
+    }
+    memoryCache.remove(MemoryResourceCache.key(currentResourcePath, relativePath));
+
+    File targetFile = getCachedFile(relativePath);
+    if (targetFile == null) {
       Log.d(TAG, "文件不存在，无需删除: " + relativePath);
       return true;
     }
 
     boolean success = targetFile.delete();
+
+    // 另一种存储格式的文件也一并删除
+    File otherFile = getCachedFile(relativePath);
+    if (success && otherFile != null) {
+      success = otherFile.delete();
+    }
+
     if (success) {
       Log.d(TAG, "删除文件成功: " + relativePath);
 
@@ -236,11 +872,174 @@ public class OnLineCacheManager {
     return success;
   }
 
+  /**
+   * 从旧版本目录迁移内容未变化的文件到当前版本目录，不访问网络
+   * 旧版本校验索引中记录的MD5就是旧哈希记录中校验通过的值，与新哈希记录相同即内容未变化；
+   * 优先使用硬链接（保持旧文件的存储格式），不支持时通过 CacheWriter 重新写入，按当前设置压缩并校验MD5
+   * @param oldResourcePath 旧资源路径
+   * @param newFileRecord 新版本哈希记录，key=文件相对路径的MD5，value=文件内容的MD5
+   * @return 迁移的文件数
+   */
+  public int migrateFromResourcePath(String oldResourcePath, Map<String, String> newFileRecord) {
+    if (currentResourceDir == null || currentResourceIndex == null) {
+      Log.w(TAG, "资源路径未设置，无法迁移");
+      return 0;
+    }
+    return migrate(oldResourcePath, currentResourcePath, currentResourceDir, currentResourceIndex, newFileRecord);
+  }
+
+  /**
+   * 从旧版本目录迁移内容未变化的文件到尚未生效的新版本目录，用于后台准备新版本
+   * @param oldResourcePath 旧资源路径
+   * @param newResourcePath 新资源路径
+   * @param newFileRecord 新版本哈希记录
+   * @return 迁移的文件数
+   */
+  public int migrateToResourcePath(String oldResourcePath, String newResourcePath, Map<String, String> newFileRecord) {
+    if (TextUtils.isEmpty(newResourcePath)) {
+      return 0;
+    }
+    if (newResourcePath.equals(currentResourcePath)) {
+      return migrateFromResourcePath(oldResourcePath, newFileRecord);
+    }
+    File newResourceDir = new File(cacheRootDir, newResourcePath);
+    if (!newResourceDir.exists() && !newResourceDir.mkdirs()) {
+      Log.e(TAG, "创建资源目录失败: " + newResourceDir.getAbsolutePath());
+      return 0;
+    }
+    return migrate(oldResourcePath, newResourcePath, newResourceDir, getResourceIndex(newResourcePath), newFileRecord);
+  }
+
+  private int migrate(String oldResourcePath, String newResourcePath, File newResourceDir,
+                      ResourceIndex newIndex, Map<String, String> newFileRecord) {
+    if (TextUtils.isEmpty(oldResourcePath) || oldResourcePath.equals(newResourcePath) || newFileRecord == null) {
+      return 0;
+    }
+    if (digestResolver != null) {
+      Log.d(TAG, "内容寻址存储已开启，相同内容的文件已共享，无需迁移");
+      return 0;
+    }
+
+    File oldResourceDir = new File(cacheRootDir, oldResourcePath);
+    if (!ResourceIndex.exists(oldResourceDir)) {
+      Log.d(TAG, "旧版本没有校验索引，无需迁移: " + oldResourcePath);
+      return 0;
+    }
+
+    long startTime = System.currentTimeMillis();
+    ResourceIndex oldIndex = getResourceIndex(oldResourcePath);
+    int migrated = 0;
+
+    for (String relativePath : oldIndex.relativePaths()) {
+      String newMd5 = HashFileDownloader.lookupExpectedMd5(newFileRecord, relativePath);
+      ResourceIndex.Entry oldEntry = oldIndex.get(relativePath);
+      if (newMd5 == null || oldEntry == null || !newMd5.equalsIgnoreCase(oldEntry.getMd5())) {
+        continue;
+      }
+
+      File oldFile = findStoredFile(new File(oldResourceDir, relativePath));
+      if (oldFile == null || !oldEntry.matches(oldFile)) {
+        continue;
+      }
+
+      if (findStoredFile(new File(newResourceDir, relativePath)) != null) {
+        continue;
+      }
+
+      // 硬链接保持旧文件的存储格式
+      File newFile = new File(newResourceDir,
+        relativePath + (isCompressedFile(oldFile) ? COMPRESSED_FILE_SUFFIX : ""));
+
+      if (link(relativePath, oldFile, newFile)) {
+        newIndex.markVerified(relativePath, newFile, newMd5);
+        migrated++;
+      } else if (copy(newResourcePath, relativePath, oldFile, newMd5)) {
+        migrated++;
+      }
+    }
+
+    newIndex.flush();
+    Log.i(TAG, "从旧版本迁移未变化的文件: " + migrated + " 个, 旧资源路径: " + oldResourcePath +
+      ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+    return migrated;
+  }
+
+  /**
+   * 硬链接文件，系统不支持或链接失败时返回false
+   */
+  private boolean link(String relativePath, File source, File target) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+      return false;
+    }
+
+    File parentDir = target.getParentFile();
+    if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs() && !parentDir.exists()) {
+      Log.e(TAG, "创建目录失败: " + parentDir.getAbsolutePath());
+      return false;
+    }
+
+    try {
+      Os.link(source.getAbsolutePath(), target.getAbsolutePath());
+      return true;
+    } catch (Exception e) {
+      Log.d(TAG, "硬链接失败，改为复制: " + relativePath);
+      return false;
+    }
+  }
+
+  /**
+   * 通过 CacheWriter 把旧文件的原始内容写入新版本，压缩格式按当前设置，
+   * 写入时重新校验MD5，校验通过才提交并记录到新版本的校验索引
+   */
+  private boolean copy(String newResourcePath, String relativePath, File source, String expectedMd5) {
+    CacheWriter writer = beginWrite(newResourcePath, relativePath, expectedMd5);
+    if (writer == null) {
+      return false;
+    }
+
+    final boolean[] cached = new boolean[1];
+    try (InputStream inputStream = new CachingInputStream(openStoredFile(source), writer, expectedMd5,
+      new CachingInputStream.Listener() {
+        @Override
+        public void onComplete(String path, boolean result) {
+          cached[0] = result;
+        }
+      })) {
+      byte[] buffer = new byte[8192];
+      while (inputStream.read(buffer) != -1) {
+        // 数据在读取过程中写入新版本
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "复制文件失败: " + relativePath, e);
+      writer.abort();
+      return false;
+    }
+    return cached[0];
+  }
+
   /**
    * 删除指定资源路径的缓存
    */
   public boolean deleteResourcePath(String resourcePath) {
+    memoryCache.removeResourcePath(resourcePath);
     File resourceDir = new File(cacheRootDir, resourcePath);
+    // 只移除该资源路径下的部分下载文件，其他版本正在进行的Range请求不受影响
+    String resourceDirPrefix = resourceDir.getAbsolutePath() + File.separator;
+    synchronized (this) {
+      Iterator<String> iterator = partialFiles.keySet().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().startsWith(resourceDirPrefix)) {
+          iterator.remove();
+        }
+      }
+    }
+    synchronized (inactiveIndexes) {
+      inactiveIndexes.remove(resourcePath);
+    }
+    // 当前生效的哈希记录引用的文件即使没有记录引用也保留
+    DigestResolver resolver = digestResolver;
+    blobStore.releaseVersion(resourcePath, resolver != null ? resolver.getExpectedDigests() : null);
+
     if (!resourceDir.exists()) {
       Log.d(TAG, "资源目录不存在，无需删除: " + resourcePath);
       return true;
@@ -257,6 +1056,7 @@ public class OnLineCacheManager {
     if (resourcePath.equals(currentResourcePath)) {
       currentResourcePath = null;
       currentResourceDir = null;
+      currentResourceIndex = null;
     }
 
     return success;
@@ -266,6 +1066,14 @@ public class OnLineCacheManager {
    * 删除所有缓存
    */
   public boolean clearAllCache() {
+    memoryCache.clear();
+    synchronized (this) {
+      partialFiles.clear();
+    }
+    synchronized (inactiveIndexes) {
+      inactiveIndexes.clear();
+    }
+
     if (!cacheRootDir.exists()) {
       Log.d(TAG, "缓存根目录不存在，无需清除");
       return true;
@@ -276,6 +1084,7 @@ public class OnLineCacheManager {
       // 清除内存中的信息
       currentResourcePath = null;
       currentResourceDir = null;
+      currentResourceIndex = null;
 
       Log.d(TAG, "所有缓存已清除");
     } else {
@@ -284,6 +1093,46 @@ public class OnLineCacheManager {
     return success;
   }
 
+  /**
+   * 收集其他版本目录中缓存过的资源相对路径
+   * 哈希文件只记录路径的MD5，预热时用这些路径去匹配新版本的哈希记录
+   */
+  public Set<String> collectKnownRelativePaths() {
+    Set<String> relativePaths = new HashSet<>();
+    collectKnownRelativePaths(cacheRootDir, relativePaths);
+    if (currentResourceIndex != null) {
+      relativePaths.addAll(currentResourceIndex.relativePaths());
+    }
+    return relativePaths;
+  }
+
+  private void collectKnownRelativePaths(File dir, Set<String> relativePaths) {
+    if (dir == null || !dir.isDirectory()) {
+      return;
+    }
+
+    if (dir.equals(blobStore.getRootDir())) {
+      return;
+    }
+
+    // 有索引文件的目录是版本根目录，不再向下查找
+    if (ResourceIndex.exists(dir)) {
+      if (!dir.equals(currentResourceDir)) {
+        relativePaths.addAll(ResourceIndex.load(dir).relativePaths());
+      }
+      return;
+    }
+
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          collectKnownRelativePaths(file, relativePaths);
+        }
+      }
+    }
+  }
+
   /**
    * 检查当前资源路径是否已设置
    */
@@ -325,7 +1174,8 @@ public class OnLineCacheManager {
 
     File parent = file.getParentFile();
     if (parent != null && parent.exists() && parent.isDirectory() &&
-      !parent.equals(currentResourceDir)) { // 不要删除资源根目录
+      !parent.equals(currentResourceDir) && // 不要删除资源根目录
+      !parent.equals(cacheRootDir) && !parent.equals(blobStore.getRootDir())) {
 
       File[] files = parent.listFiles();
       if (files != null && files.length == 0) {
@@ -338,4 +1188,129 @@ public class OnLineCacheManager {
       }
     }
   }
+
+  /**
+   * 缓存写入器 - 先写临时文件，commit时原子重命名为正式文件，abort时删除临时文件
+   */
+  public static class CacheWriter {
+    private final String relativePath;
+    private final File targetFile;
+    private final File staleFile;
+    private final File tempFile;
+    private final ResourceIndex resourceIndex;
+    private OutputStream outputStream;
+    private boolean closed;
+    private String etag;
+    private String httpLastModified;
+
+    private CacheWriter(String relativePath, File targetFile, File staleFile, File tempFile,
+                        boolean compress, ResourceIndex resourceIndex) throws IOException {
+      this.relativePath = relativePath;
+      this.targetFile = targetFile;
+      this.staleFile = staleFile;
+      this.tempFile = tempFile;
+      this.resourceIndex = resourceIndex;
+      OutputStream fileOutputStream = new FileOutputStream(tempFile);
+      try {
+        // 写入的是原始内容，压缩存储时在这里压缩
+        this.outputStream = compress
+          ? new GZIPOutputStream(fileOutputStream, 8192)
+          : new java.io.BufferedOutputStream(fileOutputStream, 8192);
+      } catch (IOException e) {
+        fileOutputStream.close();
+        throw e;
+      }
+    }
+
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    /**
+     * 设置响应头中的 ETag 和 Last-Modified，提交时记录到校验索引，用于之后的条件请求
+     */
+    public synchronized void setValidators(String etag, String httpLastModified) {
+      this.etag = etag;
+      this.httpLastModified = httpLastModified;
+    }
+
+    public synchronized void write(byte[] buffer, int offset, int length) throws IOException {
+      if (closed) {
+        throw new IOException("缓存写入器已关闭: " + relativePath);
+      }
+      outputStream.write(buffer, offset, length);
+    }
+
+    /**
+     * 提交写入：关闭临时文件并重命名为正式文件
+     * @return 是否提交成功
+     */
+    public boolean commit() {
+      return commit(null);
+    }
+
+    /**
+     * 提交已校验的写入，同时记录到校验索引，后续命中时无需重新计算MD5
+     * @param verifiedMd5 已校验通过的文件内容MD5，为null时只记录文件信息和响应头校验信息
+     * @return 是否提交成功
+     */
+    public synchronized boolean commit(String verifiedMd5) {
+      if (closed) {
+        return false;
+      }
+      closed = true;
+
+      try {
+        outputStream.close();
+      } catch (IOException e) {
+        Log.e(TAG, "关闭临时缓存文件出错: " + relativePath, e);
+        tempFile.delete();
+        return false;
+      }
+
+      if (tempFile.length() == 0) {
+        Log.e(TAG, "数据不能为空或长度为0: " + relativePath);
+        tempFile.delete();
+        return false;
+      }
+
+      if (!tempFile.renameTo(targetFile)) {
+        Log.e(TAG, "临时缓存文件重命名失败: " + relativePath);
+        tempFile.delete();
+        return false;
+      }
+
+      if (staleFile != null && staleFile.exists() && !staleFile.delete()) {
+        Log.w(TAG, "删除旧格式缓存文件失败: " + staleFile.getAbsolutePath());
+      }
+
+      if (resourceIndex != null) {
+        resourceIndex.markCached(relativePath, targetFile, verifiedMd5, etag, httpLastModified);
+      }
+      return true;
+    }
+
+    /**
+     * 放弃写入：关闭并删除临时文件
+     */
+    public synchronized void abort() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      try {
+        outputStream.close();
+      } catch (IOException e) {
+        Log.e(TAG, "关闭临时缓存文件出错: " + relativePath, e);
+      }
+      if (tempFile.exists() && !tempFile.delete()) {
+        Log.w(TAG, "删除临时缓存文件失败: " + tempFile.getAbsolutePath());
+      }
+    }
+
+    public synchronized boolean isClosed() {
+      return closed;
+    }
+  }
 }
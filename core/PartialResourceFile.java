@@ -0,0 +1,334 @@
+package com.ionicframework.online.core;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.ionicframework.online.utils.EncryptUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 部分下载的资源文件 - Range请求的响应按位置写入稀疏文件，已写入的范围记录在同目录的 .ranges 文件中
+ * 所有范围覆盖整个文件后即可校验并提交为正式缓存文件
+ * 文件结构: <相对路径>.part，<相对路径>.part.ranges
+ */
+public class PartialResourceFile {
+  private static final String TAG = "PartialResourceFile";
+  private static final String RANGES_FILE_SUFFIX = ".ranges";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  // 流关闭时的回调接口
+  public interface Listener {
+    void onClosed(PartialResourceFile partialFile);
+  }
+
+  // 持久化的下载状态
+  private static class State {
+    long totalLength = -1;
+    List<long[]> ranges = new ArrayList<>();
+  }
+
+  private final File partFile;
+  private final File rangesFile;
+  private final Gson gson = new Gson();
+  private State state;
+  private RandomAccessFile randomAccessFile;
+
+  private PartialResourceFile(File partFile) {
+    this.partFile = partFile;
+    this.rangesFile = new File(partFile.getPath() + RANGES_FILE_SUFFIX);
+    this.state = new State();
+  }
+
+  /**
+   * 加载部分下载的文件，记录不存在或损坏时从空文件开始
+   */
+  public static PartialResourceFile load(File partFile) {
+    PartialResourceFile partialFile = new PartialResourceFile(partFile);
+    if (partFile.exists() && partialFile.rangesFile.exists()) {
+      try (Reader reader = new InputStreamReader(new FileInputStream(partialFile.rangesFile), StandardCharsets.UTF_8)) {
+        State loaded = partialFile.gson.fromJson(reader, State.class);
+        if (loaded != null && loaded.ranges != null) {
+          partialFile.state = loaded;
+        }
+      } catch (Exception e) {
+        Log.w(TAG, "读取部分下载记录失败，重新开始: " + partFile.getName(), e);
+      }
+    }
+    return partialFile;
+  }
+
+  public File getFile() {
+    return partFile;
+  }
+
+  public synchronized long getTotalLength() {
+    return state.totalLength;
+  }
+
+  /**
+   * 设置文件总长度，与已记录的长度不同时丢弃已下载的内容
+   */
+  public synchronized void prepare(long totalLength) {
+    if (state.totalLength == totalLength) {
+      return;
+    }
+    if (state.totalLength >= 0) {
+      Log.w(TAG, "文件长度变化，丢弃已下载的内容: " + partFile.getName());
+    }
+    closeFile();
+    partFile.delete();
+    state = new State();
+    state.totalLength = totalLength;
+  }
+
+  /**
+   * 范围 [start, end] 是否都已写入
+   */
+  public synchronized boolean covers(long start, long end) {
+    for (long[] range : state.ranges) {
+      if (range[0] <= start && end < range[1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 已写入的范围是否覆盖整个文件
+   */
+  public synchronized boolean isComplete() {
+    return state.totalLength > 0 && covers(0, state.totalLength - 1);
+  }
+
+  /**
+   * 已写入的字节数
+   */
+  public synchronized long getCompletedLength() {
+    long completed = 0;
+    for (long[] range : state.ranges) {
+      completed += range[1] - range[0];
+    }
+    return completed;
+  }
+
+  /**
+   * 按位置写入数据
+   */
+  void write(long position, byte[] buffer, int offset, int length) throws IOException {
+    FileChannel channel = getChannel();
+    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+    while (byteBuffer.hasRemaining()) {
+      position += channel.write(byteBuffer, position);
+    }
+  }
+
+  /**
+   * 记录已写入的范围 [start, end)，与相邻或重叠的范围合并
+   */
+  synchronized void addRange(long start, long end) {
+    if (end <= start) {
+      return;
+    }
+
+    List<long[]> merged = new ArrayList<>();
+    long mergedStart = start;
+    long mergedEnd = end;
+    for (long[] range : state.ranges) {
+      if (range[1] < mergedStart || range[0] > mergedEnd) {
+        merged.add(range);
+      } else {
+        mergedStart = Math.min(mergedStart, range[0]);
+        mergedEnd = Math.max(mergedEnd, range[1]);
+      }
+    }
+    merged.add(new long[]{mergedStart, mergedEnd});
+
+    Collections.sort(merged, (a, b) -> Long.compare(a[0], b[0]));
+    state.ranges = merged;
+  }
+
+  /**
+   * 保存下载状态，先写临时文件再重命名
+   */
+  public synchronized void save() {
+    File tempFile = new File(rangesFile.getPath() + TEMP_FILE_SUFFIX);
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+      gson.toJson(state, writer);
+    } catch (IOException e) {
+      Log.e(TAG, "保存部分下载记录失败: " + partFile.getName(), e);
+      tempFile.delete();
+      return;
+    }
+    if (!tempFile.renameTo(rangesFile)) {
+      Log.e(TAG, "保存部分下载记录失败: 重命名失败");
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * 计算文件内容的MD5
+   */
+  public String computeMd5() throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("MD5不可用", e);
+    }
+
+    try (InputStream inputStream = new FileInputStream(partFile)) {
+      byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1) {
+        digest.update(buffer, 0, bytesRead);
+      }
+    }
+    return EncryptUtils.bytesToHex(digest.digest());
+  }
+
+  /**
+   * 重命名为正式文件，并删除下载记录
+   */
+  public synchronized boolean moveTo(File targetFile) {
+    closeFile();
+    if (!partFile.renameTo(targetFile)) {
+      Log.e(TAG, "部分下载文件重命名失败: " + partFile.getName());
+      return false;
+    }
+    rangesFile.delete();
+    state = new State();
+    return true;
+  }
+
+  /**
+   * 删除文件和下载记录
+   */
+  public synchronized void delete() {
+    closeFile();
+    partFile.delete();
+    rangesFile.delete();
+    state = new State();
+  }
+
+  /**
+   * 为从 start 位置开始的响应数据创建输入流，读取的数据同时写入文件，
+   * 流结束或关闭时记录已写入的范围；写入失败时停止写入，不影响读取
+   */
+  public InputStream tee(InputStream in, long start, Listener listener) {
+    return new TeeInputStream(in, start, listener);
+  }
+
+  private synchronized FileChannel getChannel() throws IOException {
+    if (randomAccessFile == null) {
+      File parentDir = partFile.getParentFile();
+      if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs() && !parentDir.exists()) {
+        throw new IOException("创建目录失败: " + parentDir.getAbsolutePath());
+      }
+      randomAccessFile = new RandomAccessFile(partFile, "rw");
+    }
+    return randomAccessFile.getChannel();
+  }
+
+  private synchronized void closeFile() {
+    if (randomAccessFile != null) {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        Log.e(TAG, "关闭部分下载文件出错: " + partFile.getName(), e);
+      }
+      randomAccessFile = null;
+    }
+  }
+
+  private class TeeInputStream extends FilterInputStream {
+    private final long start;
+    private final Listener listener;
+    private long written;
+    private boolean writeFailed;
+    private boolean finished;
+
+    TeeInputStream(InputStream in, long start, Listener listener) {
+      super(in);
+      this.start = start;
+      this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int count = read(single, 0, 1);
+      return count == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      if (count == -1) {
+        finish();
+        return -1;
+      }
+      if (!writeFailed && count > 0) {
+        try {
+          write(start + written, b, off, count);
+          written += count;
+        } catch (IOException e) {
+          Log.e(TAG, "写入部分下载文件失败: " + partFile.getName(), e);
+          writeFailed = true;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // 跳过的数据无法写入文件，之后只读取不写入
+      writeFailed = true;
+      return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      addRange(start, start + written);
+      save();
+      if (listener != null) {
+        listener.onClosed(PartialResourceFile.this);
+      }
+    }
+  }
+}
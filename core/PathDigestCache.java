@@ -0,0 +1,57 @@
+package com.ionicframework.online.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件路径到预期MD5的查找缓存 - 绑定一个版本的哈希记录，每个路径只计算一次路径MD5和斜杠规范化，
+ * 之后同一路径的查找只是一次哈希表查询；记录中不存在的路径也会缓存
+ * 切换版本时整体替换成新的实例，不会命中旧版本的结果
+ * 条目数达到上限时清空重新积累，避免请求中带随机路径时无限增长
+ */
+public class PathDigestCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+  // 记录中不存在的路径
+  private static final String ABSENT = "";
+
+  private final DigestIndex index;
+  private final int maxEntries;
+  private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+  public PathDigestCache(DigestIndex index) {
+    this(index, DEFAULT_MAX_ENTRIES);
+  }
+
+  public PathDigestCache(DigestIndex index, int maxEntries) {
+    this.index = index;
+    this.maxEntries = Math.max(1, maxEntries);
+  }
+
+  public DigestIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * 获取文件的预期MD5
+   * @param relativePath 文件相对路径，带不带开头的斜杠都可以
+   * @return 预期的文件内容MD5，不存在时返回null
+   */
+  public String get(String relativePath) {
+    String cached = cache.get(relativePath);
+    if (cached == null) {
+      String expectedMd5 = index.lookup(relativePath);
+      cached = expectedMd5 != null ? expectedMd5 : ABSENT;
+      if (cache.size() >= maxEntries) {
+        cache.clear();
+      }
+      cache.put(relativePath, cached);
+    }
+    return cached == ABSENT ? null : cached;
+  }
+
+  public int size() {
+    return cache.size();
+  }
+}
@@ -18,6 +18,9 @@ public class PreferenceHelper {
 
   // 键名定义 - 版本信息JSON
   public static final String KEY_VERSION_INFO_JSON = "version_info_json";
+  // 键名定义 - 后台准备中的新版本信息JSON及其是否已全部缓存
+  public static final String KEY_STAGED_VERSION_INFO_JSON = "staged_version_info_json";
+  public static final String KEY_STAGED_VERSION_READY = "staged_version_ready";
 
   private static PreferenceHelper instance;
 
@@ -26,6 +29,7 @@ public class PreferenceHelper {
 
   // 内存缓存
   private WebBSResFileInfo webBSResFileInfo;
+  private WebBSResFileInfo stagedVersionInfo;
 
   private PreferenceHelper(Context context) {
     this.prefs = context.getApplicationContext()
@@ -56,6 +60,16 @@ public class PreferenceHelper {
         clearVersionInfo(); // 清除损坏的数据
       }
     }
+
+    String stagedVersionInfoJson = prefs.getString(KEY_STAGED_VERSION_INFO_JSON, null);
+    if (!TextUtils.isEmpty(stagedVersionInfoJson)) {
+      try {
+        stagedVersionInfo = gson.fromJson(stagedVersionInfoJson, WebBSResFileInfo.class);
+      } catch (Exception e) {
+        Log.e(TAG, "解析待生效的版本信息失败", e);
+        clearStagedVersionInfo();
+      }
+    }
   }
 
   /**
@@ -89,6 +103,85 @@ public class PreferenceHelper {
     return webBSResFileInfo != null ? webBSResFileInfo.getResourcePath() : null;
   }
 
+  /**
+   * 保存后台准备中的新版本信息，未全部缓存前不会生效
+   */
+  public synchronized void saveStagedVersionInfo(WebBSResFileInfo versionInfo) {
+    if (versionInfo == null) return;
+
+    boolean samePath = stagedVersionInfo != null &&
+      TextUtils.equals(stagedVersionInfo.getResourcePath(), versionInfo.getResourcePath());
+    stagedVersionInfo = versionInfo;
+
+    SharedPreferences.Editor editor = prefs.edit()
+      .putString(KEY_STAGED_VERSION_INFO_JSON, gson.toJson(versionInfo));
+    if (!samePath) {
+      editor.putBoolean(KEY_STAGED_VERSION_READY, false);
+    }
+    editor.apply();
+
+    Log.d(TAG, "待生效的版本信息已保存: 版本=" + versionInfo.getResourceVersion() +
+      ", 资源路径=" + versionInfo.getResourcePath());
+  }
+
+  /**
+   * 获取后台准备中的新版本信息
+   */
+  public synchronized WebBSResFileInfo getStagedVersionInfo() {
+    return stagedVersionInfo;
+  }
+
+  /**
+   * 记录待生效版本的资源已全部缓存并校验通过
+   */
+  public synchronized void markStagedVersionReady() {
+    prefs.edit().putBoolean(KEY_STAGED_VERSION_READY, true).apply();
+  }
+
+  /**
+   * 待生效版本的资源是否已全部缓存
+   */
+  public synchronized boolean isStagedVersionReady() {
+    return stagedVersionInfo != null && prefs.getBoolean(KEY_STAGED_VERSION_READY, false);
+  }
+
+  /**
+   * 待生效版本改为当前版本，两项修改一次同步提交，中途退出不会出现半更新的状态
+   * @return 是否成功
+   */
+  public synchronized boolean promoteStagedVersionInfo() {
+    if (stagedVersionInfo == null) {
+      return false;
+    }
+
+    boolean committed = prefs.edit()
+      .putString(KEY_VERSION_INFO_JSON, gson.toJson(stagedVersionInfo))
+      .remove(KEY_STAGED_VERSION_INFO_JSON)
+      .remove(KEY_STAGED_VERSION_READY)
+      .commit();
+    if (!committed) {
+      Log.e(TAG, "切换到待生效版本失败");
+      return false;
+    }
+
+    webBSResFileInfo = stagedVersionInfo;
+    stagedVersionInfo = null;
+    Log.d(TAG, "已切换到新版本: 版本=" + webBSResFileInfo.getResourceVersion() +
+      ", 资源路径=" + webBSResFileInfo.getResourcePath());
+    return true;
+  }
+
+  /**
+   * 清除待生效的版本信息
+   */
+  public synchronized void clearStagedVersionInfo() {
+    prefs.edit()
+      .remove(KEY_STAGED_VERSION_INFO_JSON)
+      .remove(KEY_STAGED_VERSION_READY)
+      .apply();
+    stagedVersionInfo = null;
+  }
+
   /**
    * 检查是否已初始化（是否有缓存的版本信息）
    */
@@ -102,6 +195,7 @@ public class PreferenceHelper {
   public void clearAll() {
     prefs.edit().clear().apply();
     webBSResFileInfo = null;
+    stagedVersionInfo = null;
     Log.d(TAG, "所有状态已清除");
   }
 
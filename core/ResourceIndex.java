@@ -0,0 +1,289 @@
+package com.ionicframework.online.core;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资源校验索引 - 记录每个缓存文件校验通过时的大小、修改时间和MD5
+ * 缓存命中时如果文件大小和修改时间都没变，可以直接使用而无需重新计算MD5；
+ * 同时记录响应的 ETag/Last-Modified 和上次确认时间，用于哈希记录中没有的资源的条件请求
+ * 索引文件保存在 webview_cache/<resourcePath>/.resource_index.json
+ */
+public class ResourceIndex {
+  private static final String TAG = "ResourceIndex";
+  private static final String INDEX_FILE_NAME = ".resource_index.json";
+
+  // 延迟保存时间，合并短时间内的多次更新
+  private static final long SAVE_DELAY_MS = 2000;
+
+  // 所有索引共用一个后台线程写盘
+  private static final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor();
+
+  private final File indexFile;
+  private final Gson gson = new Gson();
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private boolean saveScheduled;
+
+  /**
+   * 索引记录
+   */
+  public static class Entry {
+    long size;
+    long lastModified;
+    String md5;
+    // 服务器响应头中的 ETag 和 Last-Modified，没有时为null
+    String etag;
+    String httpLastModified;
+    // 上次从服务器获取或确认未变化的时间
+    long validatedAt;
+
+    Entry(long size, long lastModified, String md5) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.md5 = md5;
+    }
+
+    Entry(long size, long lastModified, String md5, String etag, String httpLastModified, long validatedAt) {
+      this(size, lastModified, md5);
+      this.etag = etag;
+      this.httpLastModified = httpLastModified;
+      this.validatedAt = validatedAt;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getMd5() {
+      return md5;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public String getHttpLastModified() {
+      return httpLastModified;
+    }
+
+    public long getValidatedAt() {
+      return validatedAt;
+    }
+
+    /**
+     * 文件自记录后是否未被修改
+     */
+    boolean matches(File file) {
+      return file != null && file.length() == size && file.lastModified() == lastModified;
+    }
+  }
+
+  private ResourceIndex(File resourceDir) {
+    this.indexFile = new File(resourceDir, INDEX_FILE_NAME);
+  }
+
+  /**
+   * 加载资源目录下的索引文件，不存在或损坏时返回空索引
+   */
+  public static ResourceIndex load(File resourceDir) {
+    ResourceIndex index = new ResourceIndex(resourceDir);
+    index.readFromDisk();
+    return index;
+  }
+
+  /**
+   * 文件是否已校验通过且未被修改
+   * @param relativePath 相对路径
+   * @param file 当前缓存文件
+   * @param expectedMd5 预期的文件内容MD5
+   */
+  public boolean isVerified(String relativePath, File file, String expectedMd5) {
+    if (expectedMd5 == null) {
+      return false;
+    }
+    Entry entry = entries.get(normalize(relativePath));
+    return entry != null && entry.matches(file) && expectedMd5.equalsIgnoreCase(entry.md5);
+  }
+
+  /**
+   * 获取索引记录
+   */
+  public Entry get(String relativePath) {
+    return entries.get(normalize(relativePath));
+  }
+
+  /**
+   * 记录文件已校验通过
+   */
+  public void markVerified(String relativePath, File file, String md5) {
+    if (file == null || !file.exists() || md5 == null) {
+      return;
+    }
+    entries.put(normalize(relativePath), new Entry(file.length(), file.lastModified(), md5));
+    scheduleSave();
+  }
+
+  /**
+   * 记录新写入的缓存文件及其响应头中的校验信息
+   * @param md5 已校验通过的文件内容MD5，可为null
+   * @param etag 响应头 ETag，可为null
+   * @param httpLastModified 响应头 Last-Modified，可为null
+   */
+  public void markCached(String relativePath, File file, String md5, String etag, String httpLastModified) {
+    if (file == null || !file.exists()) {
+      return;
+    }
+    entries.put(normalize(relativePath), new Entry(file.length(), file.lastModified(), md5,
+      etag, httpLastModified, System.currentTimeMillis()));
+    scheduleSave();
+  }
+
+  /**
+   * 记录服务器已确认缓存文件未变化（304）
+   */
+  public void markRevalidated(String relativePath, File file) {
+    String key = normalize(relativePath);
+    Entry entry = entries.get(key);
+    if (entry == null || !entry.matches(file)) {
+      return;
+    }
+    entries.put(key, new Entry(entry.size, entry.lastModified, entry.md5,
+      entry.etag, entry.httpLastModified, System.currentTimeMillis()));
+    scheduleSave();
+  }
+
+  /**
+   * 删除索引记录
+   */
+  public void remove(String relativePath) {
+    if (entries.remove(normalize(relativePath)) != null) {
+      scheduleSave();
+    }
+  }
+
+  /**
+   * 已记录的相对路径
+   */
+  public Set<String> relativePaths() {
+    return new HashSet<>(entries.keySet());
+  }
+
+  /**
+   * 目录下是否有索引文件，有索引文件的目录即版本根目录
+   */
+  static boolean exists(File resourceDir) {
+    return new File(resourceDir, INDEX_FILE_NAME).isFile();
+  }
+
+  /**
+   * 索引记录数
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * 立即保存索引到磁盘
+   */
+  public void flush() {
+    synchronized (this) {
+      saveScheduled = false;
+    }
+    writeToDisk();
+  }
+
+  /**
+   * 统一相对路径格式，"/build/main.js" 和 "build/main.js" 视为同一文件
+   */
+  static String normalize(String relativePath) {
+    if (relativePath == null) {
+      return "";
+    }
+    return relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+  }
+
+  private synchronized void scheduleSave() {
+    if (saveScheduled) {
+      return;
+    }
+    saveScheduled = true;
+    saveExecutor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        flush();
+      }
+    }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private void readFromDisk() {
+    if (!indexFile.exists() || indexFile.length() == 0) {
+      return;
+    }
+
+    try (InputStream inputStream = new FileInputStream(indexFile);
+         Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+      Type type = new TypeToken<Map<String, Entry>>() {}.getType();
+      Map<String, Entry> loaded = gson.fromJson(reader, type);
+      if (loaded != null) {
+        for (Map.Entry<String, Entry> item : loaded.entrySet()) {
+          if (item.getKey() != null && item.getValue() != null) {
+            entries.put(item.getKey(), item.getValue());
+          }
+        }
+      }
+      Log.d(TAG, "加载资源校验索引，记录数: " + entries.size());
+    } catch (Exception e) {
+      Log.w(TAG, "加载资源校验索引失败，将重新建立", e);
+      entries.clear();
+      indexFile.delete();
+    }
+  }
+
+  private void writeToDisk() {
+    File parentDir = indexFile.getParentFile();
+    if (parentDir == null || !parentDir.exists()) {
+      // 资源目录已被删除，无需保存
+      return;
+    }
+
+    File tempFile = new File(parentDir, INDEX_FILE_NAME + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+      gson.toJson(new HashMap<>(entries), writer);
+    } catch (IOException e) {
+      Log.e(TAG, "保存资源校验索引失败", e);
+      tempFile.delete();
+      return;
+    }
+
+    if (!tempFile.renameTo(indexFile)) {
+      Log.e(TAG, "保存资源校验索引失败: 重命名失败");
+      tempFile.delete();
+    }
+  }
+}
@@ -0,0 +1,548 @@
+package com.ionicframework.online.core;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.china.ncbcmbs.Constants;
+import com.ionicframework.online.api.HttpClientProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 资源预热管理器 - 哈希文件下载完成后，在后台把尚未缓存的资源提前下载到本地
+ * 哈希文件只记录路径的MD5，因此预热的路径来自其他版本缓存过的路径、调用方提供的路径和文件列表来源，
+ * 只有路径MD5出现在新版本哈希记录中的资源才会被下载；没有任何可用的路径时（如首次安装）改为下载整包
+ * 目标版本可以是当前版本，也可以是后台准备中的新版本，每个资源路径各有一个预热任务，互不影响
+ */
+public class ResourceWarmUpManager {
+  private static final String TAG = "ResourceWarmUpManager";
+
+  // 默认并发下载数
+  private static final int DEFAULT_PARALLELISM = 3;
+
+  // 预热进度回调接口
+  public interface WarmUpCallback {
+    void onProgress(int completed, int failed, int total);
+    void onComplete(int completed, int failed, int total);
+    void onCancelled(int completed, int failed, int total);
+  }
+
+  // 整包阶段结束回调接口，在逐个下载之前调用
+  public interface BundleCallback {
+    /**
+     * @param available 服务器是否提供整包
+     * @param complete 整包中的文件是否全部缓存
+     */
+    void onBundleFinished(boolean available, boolean complete);
+  }
+
+  // 文件列表来源接口，如服务器提供的版本文件清单，每次预热开始时调用
+  public interface FileListSource {
+    /**
+     * @param resourcePath 预热的资源路径
+     * @return 该版本的文件相对路径，不可用时返回null
+     */
+    Collection<String> getRelativePaths(String resourcePath);
+  }
+
+  private final OnLineCacheManager cacheManager;
+  private final OkHttpClient okHttpClient;
+  private final BundleDownloader bundleDownloader;
+  private final Set<String> extraRelativePaths = new HashSet<>();
+  private int parallelism = DEFAULT_PARALLELISM;
+  private boolean bundleModeEnabled;
+  private FileListSource fileListSource;
+
+  // key=资源路径
+  private final Map<String, WarmUpTask> tasks = new HashMap<>();
+
+  // 单例模式
+  private static ResourceWarmUpManager instance;
+
+  public static synchronized ResourceWarmUpManager getInstance(Context context) {
+    if (instance == null) {
+      instance = new ResourceWarmUpManager(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private ResourceWarmUpManager(Context context) {
+    this.cacheManager = OnLineCacheManager.getInstance(context);
+    this.okHttpClient = HttpClientProvider.getInstance().getResourceClient();
+    this.bundleDownloader = new BundleDownloader(context);
+  }
+
+  /**
+   * 设置并发下载数
+   */
+  public synchronized void setParallelism(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * 开启或关闭整包下载模式
+   * 开启后先尝试一次性下载整个版本的压缩包，整包不可用或部分文件失败时再逐个下载
+   */
+  public synchronized void setBundleModeEnabled(boolean enabled) {
+    this.bundleModeEnabled = enabled;
+  }
+
+  /**
+   * 添加需要预热的资源相对路径（如构建产物清单），与其他版本缓存过的路径合并
+   */
+  public synchronized void addRelativePaths(Collection<String> relativePaths) {
+    if (relativePaths == null) {
+      return;
+    }
+    for (String relativePath : relativePaths) {
+      if (!TextUtils.isEmpty(relativePath)) {
+        extraRelativePaths.add(ResourceIndex.normalize(relativePath));
+      }
+    }
+  }
+
+  /**
+   * 设置文件列表来源，预热时与其他版本缓存过的路径合并，为null时不使用
+   */
+  public synchronized void setFileListSource(FileListSource fileListSource) {
+    this.fileListSource = fileListSource;
+  }
+
+  /**
+   * 开始预热，同一资源路径已有预热任务时先取消，其他资源路径的任务继续
+   * @param resourcePath 资源路径，当前版本或后台准备中的新版本
+   * @param fileRecord 哈希记录，key=文件相对路径的MD5，value=文件内容的MD5
+   * @param callback 进度回调，可为null
+   */
+  public synchronized void start(String resourcePath, Map<String, String> fileRecord, WarmUpCallback callback) {
+    start(resourcePath, fileRecord, bundleModeEnabled, callback);
+  }
+
+  /**
+   * 开始预热，指定本次是否先下载整包
+   */
+  public synchronized void start(String resourcePath, Map<String, String> fileRecord, boolean bundleMode,
+                                 WarmUpCallback callback) {
+    start(resourcePath, fileRecord, bundleMode, null, callback);
+  }
+
+  /**
+   * 开始预热，整包阶段结束时通过 bundleCallback 通知（不下载整包时不回调）
+   */
+  public synchronized void start(String resourcePath, Map<String, String> fileRecord, boolean bundleMode,
+                                 BundleCallback bundleCallback, WarmUpCallback callback) {
+    if (TextUtils.isEmpty(resourcePath) || fileRecord == null || fileRecord.isEmpty()) {
+      Log.w(TAG, "资源路径或哈希记录为空，跳过预热");
+      return;
+    }
+
+    cancel(resourcePath);
+    removeFinishedTasks();
+
+    WarmUpTask task = new WarmUpTask(resourcePath, fileRecord, new HashSet<>(extraRelativePaths),
+      fileListSource, parallelism, bundleMode, bundleCallback, callback);
+    tasks.put(resourcePath, task);
+    task.start();
+    Log.i(TAG, "开始预热资源，资源路径: " + resourcePath + ", 并发数: " + parallelism);
+  }
+
+  /**
+   * 暂停预热，正在下载的资源会继续完成
+   */
+  public synchronized void pause() {
+    for (WarmUpTask task : tasks.values()) {
+      task.setPaused(true);
+    }
+    if (!tasks.isEmpty()) {
+      Log.i(TAG, "预热已暂停");
+    }
+  }
+
+  /**
+   * 恢复预热
+   */
+  public synchronized void resume() {
+    for (WarmUpTask task : tasks.values()) {
+      task.setPaused(false);
+    }
+    if (!tasks.isEmpty()) {
+      Log.i(TAG, "预热已恢复");
+    }
+  }
+
+  /**
+   * 取消所有资源路径的预热
+   */
+  public synchronized void cancel() {
+    for (WarmUpTask task : tasks.values()) {
+      task.cancel();
+    }
+    tasks.clear();
+  }
+
+  /**
+   * 取消指定资源路径的预热，其他资源路径的任务继续
+   */
+  public synchronized void cancel(String resourcePath) {
+    WarmUpTask task = tasks.remove(resourcePath);
+    if (task != null) {
+      task.cancel();
+    }
+  }
+
+  /**
+   * 是否有正在进行的预热
+   */
+  public synchronized boolean isRunning() {
+    for (WarmUpTask task : tasks.values()) {
+      if (!task.isDone()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 指定资源路径是否正在预热
+   */
+  public synchronized boolean isRunning(String resourcePath) {
+    WarmUpTask task = tasks.get(resourcePath);
+    return task != null && !task.isDone();
+  }
+
+  private void removeFinishedTasks() {
+    Iterator<WarmUpTask> iterator = tasks.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().isDone()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * 一次预热任务
+   */
+  private class WarmUpTask {
+    private final String resourcePath;
+    private final Map<String, String> fileRecord;
+    private final Set<String> extraPaths;
+    private final FileListSource fileListSource;
+    private final boolean bundleMode;
+    private final BundleCallback bundleCallback;
+    // 开始时是否为当前版本，当前版本切换后停止写入
+    private final boolean activeVersion;
+    private final WarmUpCallback callback;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers;
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int total;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private boolean paused;
+
+    WarmUpTask(String resourcePath, Map<String, String> fileRecord, Set<String> extraPaths,
+               FileListSource fileListSource, int parallelism, boolean bundleMode,
+               BundleCallback bundleCallback, WarmUpCallback callback) {
+      this.resourcePath = resourcePath;
+      this.fileRecord = fileRecord;
+      this.extraPaths = extraPaths;
+      this.fileListSource = fileListSource;
+      this.bundleMode = bundleMode;
+      this.bundleCallback = bundleCallback;
+      this.activeVersion = resourcePath.equals(cacheManager.getCurrentResourcePath());
+      this.callback = callback;
+      this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    void start() {
+      coordinator.execute(new Runnable() {
+        @Override
+        public void run() {
+          runTask();
+        }
+      });
+    }
+
+    private void runTask() {
+      // 0. 收集候选路径：其他版本缓存过的、调用方提供的和文件列表来源中的路径
+      Set<String> candidates = cacheManager.collectKnownRelativePaths();
+      candidates.addAll(extraPaths);
+      addFileListPaths(candidates);
+
+      // 1. 整包模式，或没有任何候选路径出现在哈希记录中时（如首次安装），先一次性下载整个版本的压缩包
+      if (bundleMode || !hasRecordedPath(candidates)) {
+        if (!bundleMode) {
+          Log.i(TAG, "没有可用的预热路径，改为下载整包: " + resourcePath);
+        }
+        downloadBundle();
+      }
+
+      // 2. 只保留哈希记录中存在且尚未缓存的资源
+      List<String> pending = new ArrayList<>();
+      for (String relativePath : candidates) {
+        if (getExpectedMd5(relativePath) != null && !isCached(relativePath)) {
+          pending.add(relativePath);
+        }
+      }
+
+      total = completed.get() + pending.size();
+      Log.i(TAG, "待预热资源数: " + pending.size() + "，候选路径数: " + candidates.size());
+
+      // 3. 有限并发下载
+      for (final String relativePath : pending) {
+        if (cancelled) {
+          break;
+        }
+        try {
+          workers.execute(new Runnable() {
+            @Override
+            public void run() {
+              warmUp(relativePath);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          // 任务已取消
+          break;
+        }
+      }
+
+      workers.shutdown();
+      try {
+        while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+          if (cancelled) {
+            workers.shutdownNow();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        workers.shutdownNow();
+        cancelled = true;
+      }
+
+      done = true;
+      coordinator.shutdown();
+
+      Log.i(TAG, "预热结束，成功: " + completed.get() + ", 失败: " + failed.get() + ", 总数: " + total);
+      if (callback != null) {
+        if (cancelled) {
+          callback.onCancelled(completed.get(), failed.get(), total);
+        } else {
+          callback.onComplete(completed.get(), failed.get(), total);
+        }
+      }
+    }
+
+    private void addFileListPaths(Set<String> candidates) {
+      if (fileListSource == null) {
+        return;
+      }
+      try {
+        Collection<String> relativePaths = fileListSource.getRelativePaths(resourcePath);
+        if (relativePaths == null) {
+          return;
+        }
+        for (String relativePath : relativePaths) {
+          if (!TextUtils.isEmpty(relativePath)) {
+            candidates.add(ResourceIndex.normalize(relativePath));
+          }
+        }
+      } catch (Exception e) {
+        Log.w(TAG, "获取文件列表失败: " + resourcePath, e);
+      }
+    }
+
+    private boolean hasRecordedPath(Set<String> candidates) {
+      for (String relativePath : candidates) {
+        if (getExpectedMd5(relativePath) != null) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void downloadBundle() {
+      total = fileRecord.size();
+      boolean available = false;
+      boolean complete = false;
+      try {
+        BundleDownloader.Result result = bundleDownloader.download(resourcePath, fileRecord,
+          new BundleDownloader.Listener() {
+            @Override
+            public void onEntry(String relativePath, boolean cached) {
+              if (cached) {
+                completed.incrementAndGet();
+              } else {
+                failed.incrementAndGet();
+              }
+              if (callback != null) {
+                callback.onProgress(completed.get(), failed.get(), total);
+              }
+            }
+
+            @Override
+            public boolean isCancelled() {
+              return cancelled || !awaitResumed();
+            }
+          });
+
+        available = result.isAvailable();
+        complete = result.isComplete();
+        if (result.isComplete()) {
+          Log.i(TAG, "整包下载完成，缓存文件数: " + result.getCachedCount());
+        } else if (result.isAvailable()) {
+          Log.w(TAG, "整包部分文件失败，失败的文件将逐个下载: " + result.getFailedCount());
+        }
+      } catch (Exception e) {
+        Log.w(TAG, "整包下载失败，改为逐个下载", e);
+      }
+
+      // 整包中失败的文件在逐个下载阶段重试
+      failed.set(0);
+
+      if (bundleCallback != null && !cancelled) {
+        bundleCallback.onBundleFinished(available, complete);
+      }
+    }
+
+    private void warmUp(String relativePath) {
+      if (!awaitResumed() || cancelled) {
+        return;
+      }
+
+      // 版本已切换，停止写入旧版本
+      if (activeVersion && !resourcePath.equals(cacheManager.getCurrentResourcePath())) {
+        Log.w(TAG, "资源路径已变化，取消预热: " + resourcePath);
+        cancelled = true;
+        return;
+      }
+
+      boolean success = false;
+      try {
+        success = isCached(relativePath) || download(relativePath);
+      } catch (Exception e) {
+        Log.w(TAG, "预热资源失败: " + relativePath, e);
+      }
+
+      if (success) {
+        completed.incrementAndGet();
+      } else {
+        failed.incrementAndGet();
+      }
+      if (callback != null) {
+        callback.onProgress(completed.get(), failed.get(), total);
+      }
+    }
+
+    private boolean download(String relativePath) throws IOException {
+      String url = String.format("%s/resources/%s/www/%s",
+        Constants.getEnv().getIp(), resourcePath, relativePath);
+
+      Request request = new Request.Builder()
+        .url(url)
+        .get()
+        .build();
+
+      try (Response response = okHttpClient.newCall(request).execute()) {
+        ResponseBody responseBody = response.body();
+        if (response.code() != 200 || responseBody == null) {
+          Log.w(TAG, "预热资源下载失败: " + relativePath + ", HTTP " + response.code());
+          return false;
+        }
+
+        OnLineCacheManager.CacheWriter writer = cacheManager.beginWrite(resourcePath, relativePath,
+          getExpectedMd5(relativePath));
+        if (writer == null) {
+          return false;
+        }
+
+        // 边下载边校验并写入缓存，校验通过才提交
+        final boolean[] cached = new boolean[1];
+        InputStream inputStream = new CachingInputStream(responseBody.byteStream(), writer,
+          getExpectedMd5(relativePath), new CachingInputStream.Listener() {
+          @Override
+          public void onComplete(String path, boolean result) {
+            cached[0] = result;
+          }
+        });
+
+        try {
+          byte[] buffer = new byte[8192];
+          while (inputStream.read(buffer) != -1) {
+            if (cancelled) {
+              break;
+            }
+          }
+        } finally {
+          inputStream.close();
+        }
+        return cached[0];
+      }
+    }
+
+    /**
+     * 当前版本按文件是否存在判断，其他版本按校验索引判断
+     */
+    private boolean isCached(String relativePath) {
+      if (resourcePath.equals(cacheManager.getCurrentResourcePath())) {
+        return cacheManager.isResourceCached(relativePath);
+      }
+      return cacheManager.isVerified(resourcePath, relativePath, getExpectedMd5(relativePath));
+    }
+
+    private String getExpectedMd5(String relativePath) {
+      return HashFileDownloader.lookupExpectedMd5(fileRecord, relativePath);
+    }
+
+    synchronized void setPaused(boolean paused) {
+      this.paused = paused;
+      notifyAll();
+    }
+
+    void cancel() {
+      cancelled = true;
+      setPaused(false);
+      workers.shutdownNow();
+    }
+
+    boolean isDone() {
+      return done;
+    }
+
+    /**
+     * 暂停时阻塞，恢复或取消后返回
+     */
+    private synchronized boolean awaitResumed() {
+      while (paused && !cancelled) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.ionicframework.online.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发请求合并 - 同一资源同时只允许一个调用者（leader）下载、校验并缓存，
+ * 其余调用者等待其结果后直接读取缓存，避免重复下载；等待超时的调用者自行下载，
+ * 缓存写入各自使用临时文件再重命名，并发写同一文件也是安全的
+ */
+public class SingleFlight {
+
+  private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * 一次进行中的请求
+   */
+  public static class Flight {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final boolean leader;
+    private volatile boolean success;
+
+    private Flight(boolean leader) {
+      this.leader = leader;
+    }
+
+    /**
+     * 当前调用者是否负责执行请求
+     */
+    public boolean isLeader() {
+      return leader;
+    }
+
+    /**
+     * 等待leader完成
+     * @return leader在超时前完成且成功缓存时返回true
+     */
+    public boolean await(long timeoutMs) {
+      try {
+        return latch.await(timeoutMs, TimeUnit.MILLISECONDS) && success;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  // leader和follower共享同一个latch，follower通过这个视图等待
+  private static class FollowerFlight extends Flight {
+    private final Flight shared;
+
+    FollowerFlight(Flight shared) {
+      super(false);
+      this.shared = shared;
+    }
+
+    @Override
+    public boolean await(long timeoutMs) {
+      return shared.await(timeoutMs);
+    }
+  }
+
+  /**
+   * 加入请求：没有进行中的请求时当前调用者成为leader，否则成为follower
+   */
+  public Flight join(String key) {
+    Flight created = new Flight(true);
+    Flight existing = flights.putIfAbsent(key, created);
+    if (existing == null) {
+      return created;
+    }
+    return new FollowerFlight(existing);
+  }
+
+  /**
+   * leader完成请求，唤醒所有follower
+   * @param success 资源是否已成功缓存
+   */
+  public void complete(String key, Flight flight, boolean success) {
+    if (flight == null || !flight.isLeader()) {
+      return;
+    }
+    flights.remove(key, flight);
+    flight.success = success;
+    flight.latch.countDown();
+  }
+
+  /**
+   * 进行中的请求数
+   */
+  public int size() {
+    return flights.size();
+  }
+}
@@ -0,0 +1,133 @@
+package com.ionicframework.online.core;
+
+import com.ionicframework.online.utils.EncryptUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 边读边校验的输入流 - WebView消费数据的同时增量计算MD5，读到末尾时与预期值比对
+ * 校验失败时抛出IOException，使WebView放弃该资源，而不是把整个文件读入内存后再校验
+ */
+public class VerifyingInputStream extends FilterInputStream {
+
+  // 校验结果回调接口
+  public interface Callback {
+    void onVerified(String actualMd5);
+    void onMismatch(String expectedMd5, String actualMd5);
+  }
+
+  private final MessageDigest digest;
+  private final String expectedMd5;
+  private final Callback callback;
+
+  private boolean finished;
+  private String mismatchMessage;
+
+  /**
+   * @param in 原始输入流
+   * @param expectedMd5 预期的文件内容MD5，为null时只计算不比对
+   * @param callback 校验结果回调，可为null
+   */
+  public VerifyingInputStream(InputStream in, String expectedMd5, Callback callback) {
+    super(in);
+    this.expectedMd5 = expectedMd5;
+    this.callback = callback;
+    try {
+      this.digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5算法不可用", e);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkMismatch();
+    int b = in.read();
+    if (b == -1) {
+      finish();
+    } else {
+      digest.update((byte) b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkMismatch();
+    int bytesRead = in.read(b, off, len);
+    if (bytesRead == -1) {
+      finish();
+    } else if (bytesRead > 0) {
+      digest.update(b, off, bytesRead);
+    }
+    return bytesRead;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // 跳过的数据同样需要参与摘要计算
+    byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 1))];
+    long skipped = 0;
+    while (skipped < n) {
+      int bytesRead = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+      if (bytesRead == -1) {
+        break;
+      }
+      skipped += bytesRead;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /**
+   * 是否已读到末尾并完成校验
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  private void finish() throws IOException {
+    if (finished) {
+      checkMismatch();
+      return;
+    }
+    finished = true;
+
+    String actualMd5 = EncryptUtils.bytesToHex(digest.digest());
+    if (expectedMd5 == null || expectedMd5.equalsIgnoreCase(actualMd5)) {
+      if (callback != null) {
+        callback.onVerified(actualMd5);
+      }
+      return;
+    }
+
+    mismatchMessage = "文件完整性校验失败，预期: " + expectedMd5 + ", 实际: " + actualMd5;
+    if (callback != null) {
+      callback.onMismatch(expectedMd5, actualMd5);
+    }
+    checkMismatch();
+  }
+
+  private void checkMismatch() throws IOException {
+    if (mismatchMessage != null) {
+      throw new IOException(mismatchMessage);
+    }
+  }
+}
@@ -7,7 +7,7 @@ import com.ionicframework.online.model.VersionError;
 import com.ionicframework.online.model.VersionErrorType;
 import com.ionicframework.online.model.WebBSResFile;
 import com.ionicframework.online.model.WebBSResFileInfo;
-import com.ionicframework.online.utils.NetworkUtils;
+import com.ionicframework.online.utils.ConnectivityMonitor;
 
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -39,7 +39,7 @@ public class VersionInfoManager {
 
     // 直接创建各个组件，让它们自己管理依赖
     this.versionInfoFetcher = new VersionInfoFetcher(context);
-    this.hashFileDownloader = new HashFileDownloader(context);
+    this.hashFileDownloader = HashFileDownloader.getInstance(context);
 
     // 使用单线程执行器（版本获取通常是顺序执行）
     this.executorService = Executors.newSingleThreadExecutor();
@@ -50,7 +50,7 @@ public class VersionInfoManager {
    */
   public void getVersionInfoAsync(final VersionCallback callback) {
     // 检查网络
-    if (!NetworkUtils.isNetworkAvailable(context)) {
+    if (!ConnectivityMonitor.getInstance(context).isConnected()) {
       if (callback != null) {
         callback.onError(new VersionError(VersionErrorType.NETWORK_UNAVAILABLE, "网络不可用"));
       }
@@ -0,0 +1,213 @@
+package com.ionicframework.online.core;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.ionicframework.online.model.WebBSResFileInfo;
+
+import java.util.Map;
+
+/**
+ * 版本槽管理器 - 同时保留两个版本：正在使用的版本和后台准备中的新版本
+ * 新版本先在后台迁移未变化的文件并下载其余文件到自己的目录，哈希记录中的所有文件都缓存并校验通过后才算准备完成，
+ * 下次启动时一次性切换；用户不会使用缓存不完整、需要边用边下载的版本
+ * 只有强制更新（产品决定必须立即使用新版本）不等待准备完成，在整包下载结束后即切换
+ */
+public class VersionSlotManager {
+  private static final String TAG = "VersionSlotManager";
+
+  // 准备结束回调接口
+  public interface StagingCallback {
+    /**
+     * 整包下载结束，随后继续逐个下载其余文件；迁移后已全部缓存时不回调
+     * @param versionInfo 新版本信息
+     * @param available 服务器是否提供整包
+     * @param complete 整包中的文件是否全部缓存
+     */
+    void onBundleFinished(WebBSResFileInfo versionInfo, boolean available, boolean complete);
+
+    /**
+     * @param versionInfo 新版本信息
+     * @param complete 哈希记录中的文件是否已全部缓存，只有全部缓存时才会在下次启动时切换
+     */
+    void onStagingFinished(WebBSResFileInfo versionInfo, boolean complete);
+  }
+
+  private final Context context;
+  private final PreferenceHelper preferenceHelper;
+  private final OnLineCacheManager cacheManager;
+  private final HashFileDownloader hashFileDownloader;
+
+  // 单例模式
+  private static VersionSlotManager instance;
+
+  public static synchronized VersionSlotManager getInstance(Context context) {
+    if (instance == null) {
+      instance = new VersionSlotManager(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private VersionSlotManager(Context context) {
+    this.context = context;
+    this.preferenceHelper = PreferenceHelper.getInstance(context);
+    this.cacheManager = OnLineCacheManager.getInstance(context);
+    this.hashFileDownloader = HashFileDownloader.getInstance(context);
+  }
+
+  /**
+   * 在后台准备新版本：迁移正在使用的版本中未变化的文件，再下载整包和其余已知路径的文件
+   * 同一版本再次调用时从上次的进度继续
+   * @param versionInfo 新版本信息
+   * @param fileRecord 新版本哈希记录
+   * @param activeResourcePath 正在使用的资源路径
+   * @param callback 结束回调，可为null
+   */
+  public void stage(final WebBSResFileInfo versionInfo, Map<String, String> fileRecord,
+                    String activeResourcePath, final StagingCallback callback) {
+    final String resourcePath = versionInfo.getResourcePath();
+
+    // 只保留两个版本：之前准备的另一个新版本已经过时
+    WebBSResFileInfo previousStaged = preferenceHelper.getStagedVersionInfo();
+    if (previousStaged != null && !TextUtils.equals(previousStaged.getResourcePath(), resourcePath) &&
+      !TextUtils.equals(previousStaged.getResourcePath(), activeResourcePath)) {
+      Log.i(TAG, "删除过时的待生效版本: " + previousStaged.getResourcePath());
+      cacheManager.deleteResourcePath(previousStaged.getResourcePath());
+    }
+
+    preferenceHelper.saveStagedVersionInfo(versionInfo);
+
+    if (cacheManager.isContentAddressedStorageEnabled()) {
+      cacheManager.retainVersionBlobs(resourcePath, fileRecord.values());
+    }
+
+    int migrated = cacheManager.migrateToResourcePath(activeResourcePath, resourcePath, fileRecord);
+    Log.i(TAG, "开始准备新版本: " + resourcePath + "，已迁移未变化的文件: " + migrated + " 个");
+
+    if (isComplete(resourcePath, fileRecord)) {
+      finishStaging(versionInfo, true, callback);
+      return;
+    }
+
+    // 后台下载其余文件，哈希记录只有路径MD5，完整的文件列表来自整包
+    final Map<String, String> record = fileRecord;
+    ResourceWarmUpManager.getInstance(context).start(resourcePath, fileRecord, true,
+      new ResourceWarmUpManager.BundleCallback() {
+        @Override
+        public void onBundleFinished(boolean available, boolean complete) {
+          if (callback != null) {
+            callback.onBundleFinished(versionInfo, available, complete);
+          }
+        }
+      },
+      new ResourceWarmUpManager.WarmUpCallback() {
+        @Override
+        public void onProgress(int completed, int failed, int total) {
+        }
+
+        @Override
+        public void onComplete(int completed, int failed, int total) {
+          finishStaging(versionInfo, isComplete(resourcePath, record), callback);
+        }
+
+        @Override
+        public void onCancelled(int completed, int failed, int total) {
+          Log.w(TAG, "新版本准备被取消: " + resourcePath);
+          if (callback != null) {
+            callback.onStagingFinished(versionInfo, false);
+          }
+        }
+      });
+  }
+
+  private void finishStaging(WebBSResFileInfo versionInfo, boolean complete, StagingCallback callback) {
+    String resourcePath = versionInfo.getResourcePath();
+    // 强制更新时可能已经切换到该版本
+    if (!isStaged(resourcePath)) {
+      Log.d(TAG, "版本已不在准备中: " + resourcePath);
+      if (callback != null) {
+        callback.onStagingFinished(versionInfo, complete);
+      }
+      return;
+    }
+
+    if (complete) {
+      preferenceHelper.markStagedVersionReady();
+      Log.i(TAG, "新版本准备完成: " + resourcePath);
+    } else {
+      Log.w(TAG, "新版本的文件未全部缓存，下次检查版本时继续，在此之前仍使用旧版本: " + resourcePath);
+    }
+    if (callback != null) {
+      callback.onStagingFinished(versionInfo, complete);
+    }
+  }
+
+  /**
+   * 哈希记录中的文件是否已全部缓存并校验通过
+   */
+  private boolean isComplete(String resourcePath, Map<String, String> fileRecord) {
+    int covered = cacheManager.countCoveredEntries(resourcePath, fileRecord);
+    Log.d(TAG, "新版本缓存进度: " + covered + "/" + fileRecord.size() + ", 资源路径: " + resourcePath);
+    return covered == fileRecord.size();
+  }
+
+  /**
+   * 切换到待生效的新版本，只修改保存的版本信息，调用方随后按新的版本信息设置资源路径，
+   * 再删除旧版本的目录
+   * @param requireComplete 是否要求文件已全部缓存（强制更新时不要求）
+   * @return 切换后的版本信息，没有可切换的版本时返回null
+   */
+  public WebBSResFileInfo promoteStagedVersion(boolean requireComplete) {
+    WebBSResFileInfo stagedVersionInfo = preferenceHelper.getStagedVersionInfo();
+    if (stagedVersionInfo == null) {
+      return null;
+    }
+    String resourcePath = stagedVersionInfo.getResourcePath();
+
+    if (requireComplete) {
+      if (!preferenceHelper.isStagedVersionReady()) {
+        return null;
+      }
+      // 准备完成后文件可能被清理，切换前再确认一次
+      Map<String, String> fileRecord = hashFileDownloader.loadCachedRecord(resourcePath);
+      if (fileRecord == null || !isComplete(resourcePath, fileRecord)) {
+        Log.w(TAG, "待生效版本的缓存已不完整，暂不切换: " + resourcePath);
+        return null;
+      }
+    }
+
+    if (!preferenceHelper.promoteStagedVersionInfo()) {
+      return null;
+    }
+    Log.i(TAG, "切换到新版本: " + stagedVersionInfo.getResourceVersion() + ", 资源路径: " + resourcePath);
+    return stagedVersionInfo;
+  }
+
+  /**
+   * 放弃待生效的版本（如服务器版本已回退），删除其目录
+   * @param activeResourcePath 正在使用的资源路径，不会被删除
+   */
+  public void discardStagedVersion(String activeResourcePath) {
+    WebBSResFileInfo stagedVersionInfo = preferenceHelper.getStagedVersionInfo();
+    if (stagedVersionInfo == null) {
+      return;
+    }
+    String resourcePath = stagedVersionInfo.getResourcePath();
+    // 只取消新版本的预热，正在使用的版本的预热继续
+    ResourceWarmUpManager.getInstance(context).cancel(resourcePath);
+    preferenceHelper.clearStagedVersionInfo();
+    if (resourcePath != null && !resourcePath.equals(activeResourcePath)) {
+      cacheManager.deleteResourcePath(resourcePath);
+    }
+    Log.i(TAG, "放弃待生效的版本: " + resourcePath);
+  }
+
+  /**
+   * 指定资源路径是否为待生效的版本
+   */
+  public boolean isStaged(String resourcePath) {
+    WebBSResFileInfo stagedVersionInfo = preferenceHelper.getStagedVersionInfo();
+    return stagedVersionInfo != null && TextUtils.equals(stagedVersionInfo.getResourcePath(), resourcePath);
+  }
+}
@@ -8,7 +8,11 @@ import android.util.Log;
 import android.webkit.WebResourceResponse;
 
 import com.china.ncbcmbs.Constants;
-import com.ionicframework.online.interceptor.LoggingInterceptor;
+import com.ionicframework.online.api.CircuitBreaker;
+import com.ionicframework.online.api.CircuitOpenException;
+import com.ionicframework.online.api.HedgedCallExecutor;
+import com.ionicframework.online.api.HttpClientProvider;
+import com.ionicframework.online.interceptor.MetricsInterceptor;
 import com.ionicframework.online.resload.ErrorReason;
 import com.ionicframework.online.resload.ErrorResponse;
 import com.ionicframework.online.utils.MimeTypeUtils;
@@ -17,11 +21,14 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -39,31 +46,39 @@ public class WebViewOnLineServer {
 
   private static final String TAG = "WebViewOnLineServer";
 
+  // 等待进行中的相同请求的最长时间；leader的缓存要等它的WebView读完响应才提交，
+  // 大文件或读取慢时可能很久，超过该时间follower自行下载，不跟随leader的读取速度
+  private static final long FLIGHT_WAIT_TIMEOUT_MS = 2 * 1000;
+
   private OkHttpClient okHttpClient;
-  private String onlineBaseUrl;
+  private volatile String onlineBaseUrl;
   private RedirectFilter redirectFilter;
   private Map<String, String> onlineRequestHeaders;
   private OnLineCacheManager cacheManager;
-  private String currentResourcePath;
+  private volatile String currentResourcePath;
   private HashFileDownloader hashFileDownloader;
   private PreferenceHelper sharedState;
+  private final SingleFlight singleFlight = new SingleFlight();
+  private final CircuitBreaker circuitBreaker = HttpClientProvider.getInstance().getCircuitBreaker();
+
+  // 部分下载文件完整后在后台校验并提交，Range请求命中的未校验缓存也在这里整体校验，避免阻塞WebView的读取线程
+  private final ExecutorService partialCommitExecutor = Executors.newSingleThreadExecutor();
+  // 已提交后台校验、尚未完成的缓存文件，同一文件只校验一次
+  private final Set<String> pendingVerifications = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   public WebViewOnLineServer(Context context) {
     this.cacheManager = OnLineCacheManager.getInstance(context);
     this.sharedState = PreferenceHelper.getInstance(context);
-    this.hashFileDownloader = new HashFileDownloader(context);
+    this.hashFileDownloader = HashFileDownloader.getInstance(context);
 
     // 初始化请求头
     onlineRequestHeaders = new HashMap<>();
     onlineRequestHeaders.put("User-Agent", "Mozilla/5.0 (Android; WebView)");
     onlineRequestHeaders.put("X-Custom-Header", "CustomValue");
 
-    okHttpClient = new OkHttpClient.Builder()
-      .connectTimeout(30, TimeUnit.SECONDS)
-      .readTimeout(30, TimeUnit.SECONDS)
-      .writeTimeout(30, TimeUnit.SECONDS)
-      .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
-      .addInterceptor(new LoggingInterceptor())
+    // 响应体直接流式交给WebView，拦截器只计数不读取内容
+    okHttpClient = HttpClientProvider.getInstance().getResourceClient().newBuilder()
+      .addInterceptor(new MetricsInterceptor())
       .build();
 
     setRedirectFilter(uri -> {
@@ -88,68 +103,71 @@ public class WebViewOnLineServer {
   }
 
   public WebResourceResponse redirectToOnline(Uri uri) {
+    return redirectToOnline(uri, null);
+  }
+
+  /**
+   * 拦截请求并返回缓存或在线资源，支持单个范围的Range请求（视频、音频拖动进度）
+   * @param uri 请求地址
+   * @param requestHeaders WebView的请求头（WebResourceRequest.getRequestHeaders()），可为null
+   */
+  public WebResourceResponse redirectToOnline(Uri uri, Map<String, String> requestHeaders) {
     String relativePath = uri.getPath();
     if (TextUtils.isEmpty(relativePath)) {
       return createErrorResponse("无效的路径", 400, uri.getPath());
     }
 
     // 检查当前资源路径是否已设置
-    if (TextUtils.isEmpty(currentResourcePath)) {
-      // 尝试从SharedPreferences获取资源路径
-      String cachedResourcePath = sharedState.getResourcePath();
-      if (cachedResourcePath != null) {
-        this.currentResourcePath = cachedResourcePath;
-        Log.i(TAG, "从SharedPreferences获取资源路径: " + cachedResourcePath);
-      } else {
-        Log.w(TAG, "资源路径未设置，无法处理请求: " + relativePath);
-        return createErrorResponse("资源路径未初始化", 503, relativePath);
-      }
+    if (!resolveResourcePath()) {
+      Log.w(TAG, "资源路径未设置，无法处理请求: " + relativePath);
+      return createErrorResponse("资源路径未初始化", 503, relativePath);
     }
 
-    if (TextUtils.isEmpty(this.onlineBaseUrl)) {
-      this.onlineBaseUrl = String.format("%s/resources/%s/www", Constants.getEnv().getIp(), currentResourcePath);
+    // 1. 首先检查本地缓存，Range请求优先返回部分内容
+    String rangeHeader = getRangeHeader(requestHeaders);
+    if (rangeHeader != null) {
+      WebResourceResponse rangeResponse = serveRangeFromCache(relativePath, rangeHeader);
+      if (rangeResponse != null) {
+        return rangeResponse;
+      }
     }
 
-    // 1. 首先检查本地缓存
-    if (cacheManager != null && cacheManager.isResourcePathSet()) {
-      if (cacheManager.isResourceCached(relativePath)) {
-        Log.d(TAG, "缓存命中: " + relativePath);
-        try {
-          InputStream cachedStream = cacheManager.getCachedResourceAsStream(relativePath);
-          if (cachedStream != null) {
-            // 读取缓存文件进行完整性校验
-            byte[] cachedData = readInputStreamToBytes(cachedStream);
-
-            // 校验文件完整性
-            boolean isValid = hashFileDownloader.verifyFileIntegrity(relativePath, cachedData);
+    // 网络不可用或源站熔断时只使用缓存
+    final boolean callPermitted = circuitBreaker.isCallPermitted(CircuitBreaker.originOf(onlineBaseUrl));
 
-            if (isValid) {
-              String mimeType = MimeTypeUtils.guessMimeTypeFromUrl(relativePath);
+    // 哈希记录中没有的资源超过重新确认间隔后，先向服务器发送条件请求
+    final boolean revalidate = callPermitted && isRevalidationDue(relativePath);
+    // 未校验的缓存文件不响应Range请求（正在后台校验），网络可用时按范围从网络获取
+    final boolean skipCache = revalidate || (rangeHeader != null && callPermitted && isAwaitingVerification(relativePath));
+    WebResourceResponse cachedResponse = skipCache ? null : serveFromCache(relativePath);
+    if (cachedResponse != null) {
+      return cachedResponse;
+    }
 
-              Map<String, String> responseHeaders = new HashMap<>();
-              responseHeaders.put("X-Cache", "HIT");
-              responseHeaders.put("X-Integrity", "VALID");
-              responseHeaders.put("X-Resource-Path", currentResourcePath);
-              responseHeaders.put("Content-Type", mimeType + "; charset=UTF-8");
-              responseHeaders.put("Cache-Control", "public, max-age=31536000");
+    if (!callPermitted) {
+      Log.d(TAG, "网络不可用或源站熔断，直接返回失败: " + relativePath);
+      return createErrorResponse("网络不可用", 503, relativePath);
+    }
 
-              return createWebResourceResponse(mimeType, "UTF-8", 200,
-                "OK", responseHeaders, new ByteArrayInputStream(cachedData));
-            } else {
-              Log.w(TAG, "缓存文件完整性校验失败，将重新下载: " + relativePath);
-              // 只删除损坏的单个文件，而不是整个版本目录
-              cacheManager.deleteCachedFile(relativePath);
-            }
-          }
-        } catch (Exception e) {
-          Log.e(TAG, "读取缓存失败: " + relativePath, e);
-          // 如果缓存读取失败，继续在线获取
+    // 2. 合并并发的相同请求：只有leader下载，其余调用者等待后读取缓存
+    // Range请求各自请求不同的范围，不合并
+    final String flightKey = MemoryResourceCache.key(currentResourcePath, relativePath);
+    SingleFlight.Flight flight = rangeHeader == null ? singleFlight.join(flightKey) : null;
+    if (flight != null && !flight.isLeader()) {
+      Log.d(TAG, "等待进行中的相同请求: " + relativePath);
+      if (flight.await(FLIGHT_WAIT_TIMEOUT_MS)) {
+        cachedResponse = serveFromCache(relativePath);
+        if (cachedResponse != null) {
+          return cachedResponse;
         }
       }
+      Log.w(TAG, "相同请求未在 " + FLIGHT_WAIT_TIMEOUT_MS + "ms 内完成或失败，自行下载: " + relativePath);
+      flight = null;
     }
 
+    boolean handedOff = false;
     try {
-      // 2. 缓存未命中或校验失败，从网络获取
+      // 3. 缓存未命中或校验失败，从网络获取
       // 构建完整的在线URL
       if (TextUtils.isEmpty(relativePath) || relativePath.equals("/")) {
         relativePath = "";
@@ -183,12 +201,55 @@ public class WebViewOnLineServer {
         requestBuilder.addHeader(header.getKey(), header.getValue());
       }
 
-      // 执行请求
-      Response response = okHttpClient.newCall(requestBuilder.build()).execute();
+      // 转发Range请求头，服务器不支持时会返回完整内容
+      if (rangeHeader != null) {
+        requestBuilder.header("Range", rangeHeader);
+      }
+
+      // 条件请求：缓存未变化时服务器返回304，不传输内容
+      if (revalidate) {
+        ResourceIndex.Entry indexEntry = cacheManager.getIndexEntry(relativePath);
+        if (indexEntry != null && indexEntry.getEtag() != null) {
+          requestBuilder.header("If-None-Match", indexEntry.getEtag());
+        }
+        if (indexEntry != null && indexEntry.getHttpLastModified() != null) {
+          requestBuilder.header("If-Modified-Since", indexEntry.getHttpLastModified());
+        }
+      }
+
+      // 执行请求，清单内资源的完整请求可对冲，慢请求超过P95时再发一个相同请求
+      Response response;
+      if (rangeHeader == null && hashFileDownloader.getExpectedMd5(relativePath) != null) {
+        response = HedgedCallExecutor.getInstance().execute(okHttpClient, requestBuilder.build());
+      } else {
+        response = okHttpClient.newCall(requestBuilder.build()).execute();
+      }
 
       // 获取响应信息
       int statusCode = response.code();
 
+      // 缓存未变化，刷新确认时间后使用缓存
+      if (statusCode == 304 && revalidate) {
+        response.close();
+        cacheManager.markRevalidated(relativePath);
+        WebResourceResponse revalidatedResponse = serveFromCache(relativePath);
+        if (revalidatedResponse != null) {
+          Log.d(TAG, "服务器确认缓存未变化: " + relativePath);
+          handedOff = true;
+          singleFlight.complete(flightKey, flight, true);
+          return revalidatedResponse;
+        }
+        return createErrorResponse("缓存文件不存在", 500, relativePath);
+      }
+
+      // 部分内容响应：边返回边写入部分下载文件
+      if (statusCode == 206 && rangeHeader != null) {
+        WebResourceResponse partialResponse = createPartialNetworkResponse(uri, relativePath, response);
+        if (partialResponse != null) {
+          return partialResponse;
+        }
+      }
+
       // 只缓存成功的响应
       if (statusCode == 200) {
         String mimeType = null;
@@ -221,35 +282,16 @@ public class WebViewOnLineServer {
 
         ResponseBody responseBody = response.body();
         if (responseBody != null) {
-          // 关键修改：读取响应体到字节数组（用于缓存）
-          byte[] responseData = responseBody.bytes();
-
-          // 校验文件完整性
-          boolean isValid = hashFileDownloader.verifyFileIntegrity(relativePath, responseData);
-
-          if (!isValid) {
-            Log.e(TAG, "文件完整性校验失败: " + relativePath);
-            return createErrorResponse("文件完整性校验失败", 500, relativePath);
-          }
-
-          Log.d(TAG, "文件完整性校验通过: " + relativePath);
-
-          // 关键修改：缓存到本地
-          if (cacheManager != null) {
-            boolean cached = cacheManager.cacheResource(relativePath, responseData);
-            if (cached) {
-              Log.d(TAG, "资源缓存成功: " + relativePath);
-            } else {
-              Log.w(TAG, "资源缓存失败: " + relativePath);
-            }
-          }
-
-          // 关键修改：从字节数组创建输入流（用于响应）
-          InputStream inputStream = new ByteArrayInputStream(responseData);
+          // 边下载边缓存：数据同时流向WebView、临时缓存文件和MD5摘要，校验通过后才提交缓存
+          String expectedMd5 = hashFileDownloader.getExpectedMd5(relativePath);
+          InputStream inputStream = createCachingNetworkStream(responseBody.byteStream(), relativePath,
+            expectedMd5, response.header("ETag"), response.header("Last-Modified"),
+            createFlightListener(flightKey, flight));
+          handedOff = true;
 
           // 添加缓存相关的响应头
           responseHeaders.put("X-Cache", "MISS");
-          responseHeaders.put("X-Integrity", "VALID");
+          responseHeaders.put("X-Integrity", expectedMd5 != null ? "STREAMING" : "UNLISTED");
           responseHeaders.put("X-Resource-Path", currentResourcePath);
 
           return createWebResourceResponse(mimeType, charset, statusCode,
@@ -257,33 +299,410 @@ public class WebViewOnLineServer {
         }
       }
 
+      response.close();
+
+      // 重新确认时服务器出错，继续使用旧缓存
+      if (revalidate && statusCode >= 500) {
+        WebResourceResponse staleResponse = serveStale(relativePath);
+        if (staleResponse != null) {
+          return staleResponse;
+        }
+      }
+
       // 非200响应或不支持缓存的情况
       return createErrorResponse("请求失败，状态码: " + statusCode, statusCode, relativePath);
 
     } catch (SocketTimeoutException e) {
       Log.e(TAG, "在线请求超时: " + uri.toString(), e);
-      return createErrorResponse("请求超时", 504, relativePath);
+      WebResourceResponse staleResponse = revalidate ? serveStale(relativePath) : null;
+      return staleResponse != null ? staleResponse : createErrorResponse("请求超时", 504, relativePath);
+    } catch (CircuitOpenException e) {
+      Log.w(TAG, "请求未发出: " + uri.toString() + ", " + e.getMessage());
+      WebResourceResponse staleResponse = revalidate ? serveStale(relativePath) : null;
+      return staleResponse != null ? staleResponse : createErrorResponse("网络不可用", 503, relativePath);
     } catch (IOException e) {
       Log.e(TAG, "网络错误，重定向到在线资源失败: " + uri.toString(), e);
-      return createErrorResponse("网络错误", 502, relativePath);
+      WebResourceResponse staleResponse = revalidate ? serveStale(relativePath) : null;
+      return staleResponse != null ? staleResponse : createErrorResponse("网络错误", 502, relativePath);
     } catch (Exception e) {
       Log.e(TAG, "重定向到在线资源时出错: " + uri.toString(), e);
       return createErrorResponse("加载在线资源失败", 500, relativePath);
+    } finally {
+      if (!handedOff) {
+        // 没有生成缓存流，立即通知等待中的请求
+        singleFlight.complete(flightKey, flight, false);
+      }
     }
   }
 
   /**
-   * 将InputStream读取为字节数组
+   * 使用缓存管理器当前的资源路径，版本切换后在线地址随之更新；
+   * 缓存管理器尚未设置时使用SharedPreferences中保存的资源路径
+   * @return 是否有可用的资源路径
+   */
+  private synchronized boolean resolveResourcePath() {
+    String resourcePath = cacheManager.getCurrentResourcePath();
+    if (TextUtils.isEmpty(resourcePath)) {
+      resourcePath = sharedState.getResourcePath();
+    }
+    if (TextUtils.isEmpty(resourcePath)) {
+      return false;
+    }
+
+    if (!resourcePath.equals(currentResourcePath)) {
+      Log.i(TAG, "资源路径: " + resourcePath);
+      this.onlineBaseUrl = String.format("%s/resources/%s/www", Constants.getEnv().getIp(), resourcePath);
+      this.currentResourcePath = resourcePath;
+    }
+    return true;
+  }
+
+  /**
+   * 哈希记录中没有的缓存资源是否需要向服务器重新确认
+   */
+  private boolean isRevalidationDue(String relativePath) {
+    return cacheManager != null && cacheManager.isResourcePathSet() &&
+      hashFileDownloader.getExpectedMd5(relativePath) == null &&
+      cacheManager.isResourceCached(relativePath) &&
+      cacheManager.isRevalidationDue(relativePath);
+  }
+
+  /**
+   * 重新确认失败时返回旧缓存
+   */
+  private WebResourceResponse serveStale(String relativePath) {
+    WebResourceResponse staleResponse = serveFromCache(relativePath);
+    if (staleResponse != null) {
+      Log.w(TAG, "无法向服务器确认，使用旧缓存: " + relativePath);
+    }
+    return staleResponse;
+  }
+
+  /**
+   * 缓存流完成时通知等待中的相同请求
+   */
+  private CachingInputStream.Listener createFlightListener(final String flightKey, final SingleFlight.Flight flight) {
+    return new CachingInputStream.Listener() {
+      @Override
+      public void onComplete(String relativePath, boolean cached) {
+        singleFlight.complete(flightKey, flight, cached);
+      }
+    };
+  }
+
+  /**
+   * 从内存或磁盘缓存获取资源
+   * @return 缓存响应，未命中返回null
    */
-  private byte[] readInputStreamToBytes(InputStream inputStream) throws IOException {
+  private WebResourceResponse serveFromCache(String relativePath) {
+    if (cacheManager != null && cacheManager.isResourcePathSet()) {
+      // 内存热资源缓存
+      MemoryResourceCache memoryCache = cacheManager.getMemoryCache();
+      String memoryKey = MemoryResourceCache.key(cacheManager.getCurrentResourcePath(), relativePath);
+      MemoryResourceCache.Entry memoryEntry = memoryCache.get(memoryKey);
+      if (memoryEntry != null) {
+        Log.d(TAG, "内存缓存命中: " + relativePath);
+        Map<String, String> responseHeaders = new HashMap<>(memoryEntry.getHeaders());
+        responseHeaders.put("X-Cache", "MEMORY");
+        return createWebResourceResponse(memoryEntry.getMimeType(), memoryEntry.getEncoding(), 200,
+          "OK", responseHeaders, new ByteArrayInputStream(memoryEntry.getData()));
+      }
+
+      // 磁盘缓存
+      if (cacheManager.isResourceCached(relativePath)) {
+        Log.d(TAG, "缓存命中: " + relativePath);
+        try {
+          InputStream cachedStream = cacheManager.getCachedResourceAsStream(relativePath);
+          if (cachedStream != null) {
+            // 校验索引中记录过且文件未变化的直接使用，否则边读边校验
+            String expectedMd5 = hashFileDownloader.getExpectedMd5(relativePath);
+            boolean verified = expectedMd5 != null && cacheManager.isVerified(relativePath, expectedMd5);
+
+            String mimeType = MimeTypeUtils.guessMimeTypeFromUrl(relativePath);
+            Map<String, String> responseHeaders = createCacheHitHeaders(mimeType,
+              verified ? "VERIFIED" : expectedMd5 != null ? "STREAMING" : "UNLISTED");
+
+            // 已校验的小文件放入内存缓存，后续命中不再访问磁盘（压缩存储的按解压后长度计算）
+            long contentLength = cacheManager.getCachedContentLength(relativePath);
+            if (verified && contentLength > 0 && memoryCache.isCacheable(contentLength)) {
+              byte[] cachedData = readInputStreamToBytes(cachedStream, (int) contentLength);
+              memoryCache.put(memoryKey, new MemoryResourceCache.Entry(cachedData, mimeType, "UTF-8", responseHeaders));
+              return createWebResourceResponse(mimeType, "UTF-8", 200,
+                "OK", responseHeaders, new ByteArrayInputStream(cachedData));
+            }
+
+            InputStream responseStream = expectedMd5 != null && !verified
+              ? createVerifyingCacheStream(cachedStream, relativePath, expectedMd5)
+              : cachedStream;
+
+            return createWebResourceResponse(mimeType, "UTF-8", 200,
+              "OK", responseHeaders, responseStream);
+          }
+        } catch (Exception e) {
+          Log.e(TAG, "读取缓存失败: " + relativePath, e);
+          // 如果缓存读取失败，继续在线获取
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * 从内存缓存、磁盘缓存或部分下载文件中返回Range请求的内容
+   * @return 206或416响应，无法处理时返回null（按完整请求处理）
+   */
+  private WebResourceResponse serveRangeFromCache(String relativePath, String rangeHeader) {
+    if (cacheManager == null || !cacheManager.isResourcePathSet()) {
+      return null;
+    }
+
+    String mimeType = MimeTypeUtils.guessMimeTypeFromUrl(relativePath);
+
+    // 内存热资源缓存
+    MemoryResourceCache.Entry memoryEntry = cacheManager.getMemoryCache().get(
+      MemoryResourceCache.key(cacheManager.getCurrentResourcePath(), relativePath));
+    if (memoryEntry != null) {
+      byte[] data = memoryEntry.getData();
+      ByteRange range = ByteRange.parse(rangeHeader, data.length);
+      if (range == null) {
+        return null;
+      }
+      if (!range.isSatisfiable()) {
+        return createRangeNotSatisfiableResponse(mimeType, range);
+      }
+      Map<String, String> responseHeaders = new HashMap<>(memoryEntry.getHeaders());
+      responseHeaders.put("X-Cache", "MEMORY");
+      return createPartialContentResponse(memoryEntry.getMimeType(), responseHeaders, range,
+        new ByteArrayInputStream(data, (int) range.getStart(), (int) range.getLength()));
+    }
+
+    // 磁盘缓存
+    if (cacheManager.isResourceCached(relativePath)) {
+      ByteRange range = ByteRange.parse(rangeHeader, cacheManager.getCachedContentLength(relativePath));
+      if (range == null) {
+        return null;
+      }
+      if (!range.isSatisfiable()) {
+        return createRangeNotSatisfiableResponse(mimeType, range);
+      }
+
+      // 只读取部分内容无法边读边校验，未校验过的文件按未命中处理，同时在后台整体校验一次，
+      // 大文件的校验不阻塞拖动进度，校验通过后的Range请求直接使用缓存
+      String expectedMd5 = hashFileDownloader.getExpectedMd5(relativePath);
+      if (expectedMd5 != null && !cacheManager.isVerified(relativePath, expectedMd5)) {
+        verifyCachedFileInBackground(relativePath, expectedMd5);
+        return null;
+      }
+
+      InputStream rangeStream = cacheManager.getCachedResourceRange(relativePath, range.getStart(), range.getLength());
+      if (rangeStream == null) {
+        return null;
+      }
+      Log.d(TAG, "缓存命中（部分内容）: " + relativePath + " " + range.toContentRange());
+      return createPartialContentResponse(mimeType,
+        createCacheHitHeaders(mimeType, expectedMd5 != null ? "VERIFIED" : "UNLISTED"), range, rangeStream);
+    }
+
+    // 之前Range请求下载过的部分：文件未下载完整前无法校验MD5，这些数据与同一版本的网络206响应
+    // 来源相同、未经校验的程度也相同，因此标记为 PARTIAL 而不是 VERIFIED；下载完整后整体校验通过才提交为正式缓存，
+    // 校验失败时删除部分下载文件
+    PartialResourceFile partialFile = cacheManager.openPartialFile(relativePath);
+    if (partialFile != null && partialFile.getTotalLength() > 0) {
+      ByteRange range = ByteRange.parse(rangeHeader, partialFile.getTotalLength());
+      if (range != null && range.isSatisfiable() && partialFile.covers(range.getStart(), range.getEnd())) {
+        try {
+          InputStream rangeStream = new FileRangeInputStream(partialFile.getFile(), range.getStart(), range.getLength());
+          Log.d(TAG, "部分下载文件命中: " + relativePath + " " + range.toContentRange());
+          Map<String, String> responseHeaders = createCacheHitHeaders(mimeType, "PARTIAL");
+          responseHeaders.put("X-Cache", "PARTIAL");
+          return createPartialContentResponse(mimeType, responseHeaders, range, rangeStream);
+        } catch (IOException e) {
+          Log.e(TAG, "读取部分下载文件失败: " + relativePath, e);
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * 已缓存、在哈希记录中但尚未校验的文件
+   */
+  private boolean isAwaitingVerification(String relativePath) {
+    if (!cacheManager.isResourceCached(relativePath)) {
+      return false;
+    }
+    String expectedMd5 = hashFileDownloader.getExpectedMd5(relativePath);
+    return expectedMd5 != null && !cacheManager.isVerified(relativePath, expectedMd5);
+  }
+
+  /**
+   * 在后台整体校验缓存文件，版本已切换时跳过
+   */
+  private void verifyCachedFileInBackground(final String relativePath, final String expectedMd5) {
+    final String resourcePath = currentResourcePath;
+    final String key = resourcePath + ":" + relativePath;
+    if (!pendingVerifications.add(key)) {
+      return;
+    }
+    partialCommitExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (resourcePath.equals(cacheManager.getCurrentResourcePath()) &&
+            !cacheManager.isVerified(relativePath, expectedMd5)) {
+            cacheManager.verifyCachedFile(relativePath, expectedMd5);
+          }
+        } finally {
+          pendingVerifications.remove(key);
+        }
+      }
+    });
+  }
+
+  /**
+   * 为206网络响应创建WebView响应，数据同时写入部分下载文件
+   * Content-Range缺失或无法解析时原样返回服务器的内容，不写入部分下载文件
+   * @return WebView响应，没有响应体时返回null
+   */
+  private WebResourceResponse createPartialNetworkResponse(Uri uri, String relativePath, Response response) {
+    ResponseBody responseBody = response.body();
+    if (responseBody == null) {
+      return null;
+    }
+    ByteRange contentRange = ByteRange.parseContentRange(response.header("Content-Range"));
+    if (contentRange == null) {
+      Log.w(TAG, "无法解析部分内容响应，原样返回不缓存: " + relativePath);
+    }
+
+    Map<String, String> responseHeaders = new HashMap<>();
+    for (String headerName : response.headers().names()) {
+      responseHeaders.put(headerName, response.header(headerName));
+    }
+    responseHeaders.put("X-Cache", "MISS");
+    responseHeaders.put("X-Resource-Path", currentResourcePath);
+
+    String mimeType = MimeTypeUtils.guessMimeTypeFromUrl(uri.getPath());
+    String contentType = response.header("Content-Type");
+    if (contentType != null && !TextUtils.isEmpty(contentType.split(";")[0].trim())) {
+      mimeType = contentType.split(";")[0].trim();
+    }
+
+    InputStream inputStream = responseBody.byteStream();
+    PartialResourceFile partialFile = contentRange != null && contentRange.getTotalLength() > 0 &&
+      cacheManager != null ? cacheManager.openPartialFile(relativePath) : null;
+    if (partialFile != null) {
+      partialFile.prepare(contentRange.getTotalLength());
+      inputStream = partialFile.tee(inputStream, contentRange.getStart(),
+        createPartialFileListener(relativePath, currentResourcePath));
+    }
+
+    return createWebResourceResponse(mimeType, "UTF-8", 206,
+      ErrorReason.getReasonPhrase(206), responseHeaders, inputStream);
+  }
+
+  /**
+   * 部分下载文件写入结束时检查是否已完整，完整后在后台校验并提交为正式缓存
+   */
+  private PartialResourceFile.Listener createPartialFileListener(final String relativePath, final String resourcePath) {
+    return new PartialResourceFile.Listener() {
+      @Override
+      public void onClosed(final PartialResourceFile partialFile) {
+        if (!partialFile.isComplete()) {
+          return;
+        }
+        partialCommitExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            commitPartialFile(relativePath, resourcePath, partialFile);
+          }
+        });
+      }
+    };
+  }
+
+  private void commitPartialFile(String relativePath, String resourcePath, PartialResourceFile partialFile) {
+    // 已被其他请求提交，或版本已切换
+    if (!partialFile.isComplete() || !resourcePath.equals(cacheManager.getCurrentResourcePath())) {
+      return;
+    }
+
     try {
-      java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
-      byte[] data = new byte[8192];
-      int bytesRead;
-      while ((bytesRead = inputStream.read(data, 0, data.length)) != -1) {
-        buffer.write(data, 0, bytesRead);
+      String expectedMd5 = hashFileDownloader.getExpectedMd5(relativePath);
+      String actualMd5 = partialFile.computeMd5();
+      if (expectedMd5 != null && !expectedMd5.equalsIgnoreCase(actualMd5)) {
+        Log.w(TAG, "部分下载文件完整性校验失败，已删除: " + relativePath +
+          ", 预期: " + expectedMd5 + ", 实际: " + actualMd5);
+        partialFile.delete();
+        return;
       }
-      return buffer.toByteArray();
+      cacheManager.commitPartialFile(relativePath, partialFile, expectedMd5 != null ? actualMd5 : null);
+    } catch (IOException e) {
+      Log.e(TAG, "提交部分下载文件失败: " + relativePath, e);
+    }
+  }
+
+  /**
+   * 获取请求头中的Range，不区分大小写；低于Android 5.0时无法返回206，不处理Range
+   */
+  private static String getRangeHeader(Map<String, String> requestHeaders) {
+    if (requestHeaders == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+      return null;
+    }
+    for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+      if ("Range".equalsIgnoreCase(header.getKey()) && !TextUtils.isEmpty(header.getValue())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static WebResourceResponse createPartialContentResponse(String mimeType, Map<String, String> responseHeaders,
+                                                                  ByteRange range, InputStream data) {
+    responseHeaders.put("Content-Range", range.toContentRange());
+    responseHeaders.put("Content-Length", String.valueOf(range.getLength()));
+    responseHeaders.put("Accept-Ranges", "bytes");
+    return createWebResourceResponse(mimeType, "UTF-8", 206, ErrorReason.getReasonPhrase(206), responseHeaders, data);
+  }
+
+  private static WebResourceResponse createRangeNotSatisfiableResponse(String mimeType, ByteRange range) {
+    Map<String, String> responseHeaders = new HashMap<>();
+    responseHeaders.put("Content-Range", range.toContentRange());
+    responseHeaders.put("Accept-Ranges", "bytes");
+    return createWebResourceResponse(mimeType, "UTF-8", 416, ErrorReason.getReasonPhrase(416),
+      responseHeaders, new ByteArrayInputStream(new byte[0]));
+  }
+
+  /**
+   * 构建缓存命中的响应头
+   */
+  private Map<String, String> createCacheHitHeaders(String mimeType, String integrity) {
+    Map<String, String> responseHeaders = new HashMap<>();
+    responseHeaders.put("X-Cache", "HIT");
+    responseHeaders.put("X-Integrity", integrity);
+    responseHeaders.put("X-Resource-Path", currentResourcePath);
+    responseHeaders.put("Content-Type", mimeType + "; charset=UTF-8");
+    responseHeaders.put("Cache-Control", "public, max-age=31536000");
+    responseHeaders.put("Accept-Ranges", "bytes");
+    return responseHeaders;
+  }
+
+  /**
+   * 将已知长度的InputStream读取为字节数组
+   */
+  private byte[] readInputStreamToBytes(InputStream inputStream, int length) throws IOException {
+    try {
+      byte[] data = new byte[length];
+      int offset = 0;
+      while (offset < length) {
+        int bytesRead = inputStream.read(data, offset, length - offset);
+        if (bytesRead == -1) {
+          throw new java.io.EOFException("缓存文件长度不足: " + offset + "/" + length);
+        }
+        offset += bytesRead;
+      }
+      return data;
     } finally {
       try {
         inputStream.close();
@@ -293,6 +712,48 @@ public class WebViewOnLineServer {
     }
   }
 
+  /**
+   * 为网络响应创建边下载边缓存的输入流，无法写缓存时只做校验
+   * @param etag 响应头 ETag，随缓存记录，用于之后的条件请求
+   * @param httpLastModified 响应头 Last-Modified
+   */
+  private InputStream createCachingNetworkStream(InputStream networkStream, String relativePath, String expectedMd5,
+                                                 String etag, String httpLastModified,
+                                                 CachingInputStream.Listener listener) {
+    OnLineCacheManager.CacheWriter writer = cacheManager != null ? cacheManager.beginWrite(relativePath) : null;
+    if (writer == null) {
+      Log.w(TAG, "无法写入缓存，仅校验: " + relativePath);
+      if (listener != null) {
+        listener.onComplete(relativePath, false);
+      }
+      return new VerifyingInputStream(networkStream, expectedMd5, null);
+    }
+    writer.setValidators(etag, httpLastModified);
+    return new CachingInputStream(networkStream, writer, expectedMd5, listener);
+  }
+
+  /**
+   * 为缓存文件创建边读边校验的输入流，校验失败时删除损坏的缓存文件
+   */
+  private InputStream createVerifyingCacheStream(InputStream cachedStream, final String relativePath, String expectedMd5) {
+    return new VerifyingInputStream(cachedStream, expectedMd5, new VerifyingInputStream.Callback() {
+      @Override
+      public void onVerified(String actualMd5) {
+        Log.d(TAG, "缓存文件完整性校验通过: " + relativePath);
+        // 记录到校验索引，下次命中时无需重新计算MD5
+        cacheManager.markVerified(relativePath, actualMd5);
+      }
+
+      @Override
+      public void onMismatch(String expected, String actual) {
+        Log.w(TAG, "缓存文件完整性校验失败，将重新下载: " + relativePath +
+          ", 预期: " + expected + ", 实际: " + actual);
+        // 只删除损坏的单个文件，而不是整个版本目录
+        cacheManager.deleteCachedFile(relativePath);
+      }
+    });
+  }
+
   private WebResourceResponse createErrorResponse(String message, int statusCode, String relativePath) {
     return ErrorResponse.createErrorResponse(message, statusCode, null, relativePath);
   }
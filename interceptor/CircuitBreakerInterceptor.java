@@ -0,0 +1,66 @@
+package com.ionicframework.online.interceptor;
+
+import com.ionicframework.online.api.CircuitBreaker;
+import com.ionicframework.online.api.CircuitOpenException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * 熔断拦截器 - 源站熔断或网络不可用时直接抛出 CircuitOpenException，不等待连接超时；
+ * 请求结果计入熔断器：连接失败、超时和5xx按失败计，被取消的请求不计入
+ * 延迟取发出请求到收到响应头的时间，不包括并发限制的排队和重试的等待
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+  private final CircuitBreaker circuitBreaker;
+
+  public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    String origin = CircuitBreaker.originOf(request.url());
+
+    // 探测请求在熔断期间也要发出
+    boolean probe = request.tag(CircuitBreaker.Probe.class) != null;
+    if (!probe && !circuitBreaker.isCallPermitted(origin)) {
+      throw new CircuitOpenException(circuitBreaker.isNetworkAvailable()
+        ? "源站已熔断: " + origin : "网络不可用");
+    }
+
+    Response response;
+    try {
+      response = chain.proceed(request);
+    } catch (IOException e) {
+      if (!chain.call().isCanceled()) {
+        circuitBreaker.onFailure(origin);
+      }
+      throw e;
+    }
+
+    if (response.code() >= 500) {
+      circuitBreaker.onFailure(origin);
+    } else {
+      circuitBreaker.onSuccess(origin, networkLatencyMillis(response));
+    }
+    return response;
+  }
+
+  /**
+   * 网络层记录的请求发出到响应头收到的时间，没有记录时返回0
+   */
+  private static long networkLatencyMillis(Response response) {
+    long sentAt = response.sentRequestAtMillis();
+    long receivedAt = response.receivedResponseAtMillis();
+    if (sentAt <= 0 || receivedAt < sentAt) {
+      return 0;
+    }
+    return receivedAt - sentAt;
+  }
+}
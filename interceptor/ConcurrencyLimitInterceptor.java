@@ -0,0 +1,182 @@
+package com.ionicframework.online.interceptor;
+
+import com.ionicframework.online.api.CircuitBreaker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * 并发限制拦截器 - OkHttp 调度器的并发数只限制 enqueue 的异步请求，
+ * 同步 execute 的请求（资源、哈希文件、整包、接口）在这里按相同的总数和单主机上限排队
+ * 从发出请求到响应体读完或关闭为止占用一个名额，调用方必须关闭响应；探测请求不受限制
+ */
+public class ConcurrencyLimitInterceptor implements Interceptor {
+
+  // 排队时检查请求是否已取消的间隔
+  private static final long WAIT_SLICE_MS = 100;
+
+  private final Map<String, Integer> hostCounts = new HashMap<>();
+  private int runningCount;
+  private int maxRequests;
+  private int maxRequestsPerHost;
+
+  public ConcurrencyLimitInterceptor(int maxRequests, int maxRequestsPerHost) {
+    this.maxRequests = Math.max(1, maxRequests);
+    this.maxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+  }
+
+  /**
+   * 设置最大并发请求数，排队中的请求按新的上限重新检查
+   */
+  public synchronized void setMaxRequests(int maxRequests) {
+    this.maxRequests = Math.max(1, maxRequests);
+    notifyAll();
+  }
+
+  /**
+   * 设置同一主机的最大并发请求数
+   */
+  public synchronized void setMaxRequestsPerHost(int maxRequestsPerHost) {
+    this.maxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+    notifyAll();
+  }
+
+  /**
+   * 正在占用名额的请求数
+   */
+  public synchronized int getRunningCount() {
+    return runningCount;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (request.tag(CircuitBreaker.Probe.class) != null) {
+      return chain.proceed(request);
+    }
+
+    String host = request.url().host();
+    acquire(host, chain.call());
+
+    boolean handedOff = false;
+    try {
+      Response response = chain.proceed(request);
+      ResponseBody body = response.body();
+      if (body == null) {
+        return response;
+      }
+      Response limitedResponse = response.newBuilder()
+        .body(new PermitResponseBody(body, host))
+        .build();
+      handedOff = true;
+      return limitedResponse;
+    } finally {
+      if (!handedOff) {
+        release(host);
+      }
+    }
+  }
+
+  private synchronized void acquire(String host, Call call) throws IOException {
+    while (runningCount >= maxRequests || hostCount(host) >= maxRequestsPerHost) {
+      if (call.isCanceled()) {
+        throw new IOException("Canceled");
+      }
+      try {
+        wait(WAIT_SLICE_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("等待并发名额时被中断");
+      }
+    }
+    runningCount++;
+    hostCounts.put(host, hostCount(host) + 1);
+  }
+
+  private synchronized void release(String host) {
+    runningCount--;
+    int count = hostCount(host) - 1;
+    if (count > 0) {
+      hostCounts.put(host, count);
+    } else {
+      hostCounts.remove(host);
+    }
+    notifyAll();
+  }
+
+  private int hostCount(String host) {
+    Integer count = hostCounts.get(host);
+    return count != null ? count : 0;
+  }
+
+  /**
+   * 响应体读完或关闭时归还名额，只归还一次
+   */
+  private class PermitResponseBody extends ResponseBody {
+    private final ResponseBody delegate;
+    private final String host;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private BufferedSource source;
+
+    PermitResponseBody(ResponseBody delegate, String host) {
+      this.delegate = delegate;
+      this.host = host;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+      return delegate.contentLength();
+    }
+
+    @Override
+    public synchronized BufferedSource source() {
+      if (source == null) {
+        source = Okio.buffer(new ForwardingSource(delegate.source()) {
+          @Override
+          public long read(Buffer sink, long byteCount) throws IOException {
+            long bytesRead = super.read(sink, byteCount);
+            if (bytesRead == -1) {
+              releaseOnce();
+            }
+            return bytesRead;
+          }
+
+          @Override
+          public void close() throws IOException {
+            try {
+              super.close();
+            } finally {
+              releaseOnce();
+            }
+          }
+        });
+      }
+      return source;
+    }
+
+    private void releaseOnce() {
+      if (released.compareAndSet(false, true)) {
+        release(host);
+      }
+    }
+  }
+}
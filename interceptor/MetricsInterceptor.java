@@ -0,0 +1,127 @@
+package com.ionicframework.online.interceptor;
+
+import android.util.Log;
+
+import com.ionicframework.online.api.NetworkMetrics;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+
+/**
+ * 请求日志与字节计数拦截器 - 响应体通过计数的 ForwardingSource 原样流式传递，不读取到内存，
+ * 响应体读完或关闭时输出耗时和字节数并写入 NetworkMetrics
+ */
+public class MetricsInterceptor implements Interceptor {
+  private static final String TAG = "OkHttp";
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    long startTime = System.nanoTime();
+
+    Log.d(TAG, String.format("--> %s %s", request.method(), request.url()));
+
+    Response response;
+    try {
+      response = chain.proceed(request);
+    } catch (IOException e) {
+      Log.d(TAG, String.format("<-- FAILED %s %s (%dms): %s", request.method(), request.url(),
+        (System.nanoTime() - startTime) / 1000000, e.getMessage()));
+      throw e;
+    }
+
+    long headersTime = System.nanoTime();
+    Log.d(TAG, String.format("<-- %d %s %s (首字节 %dms)", response.code(), response.message(),
+      request.url(), (headersTime - startTime) / 1000000));
+
+    ResponseBody responseBody = response.body();
+    if (responseBody == null) {
+      return response;
+    }
+
+    return response.newBuilder()
+      .body(new CountingResponseBody(responseBody, request, startTime))
+      .build();
+  }
+
+  /**
+   * 计数的响应体，内容类型和长度与原响应体相同
+   */
+  private static class CountingResponseBody extends ResponseBody {
+    private final ResponseBody delegate;
+    private final BufferedSource source;
+
+    CountingResponseBody(ResponseBody delegate, Request request, long startTime) {
+      this.delegate = delegate;
+      this.source = Okio.buffer(new CountingSource(delegate.source(), request, startTime));
+    }
+
+    @Override
+    public MediaType contentType() {
+      return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+      return delegate.contentLength();
+    }
+
+    @Override
+    public BufferedSource source() {
+      return source;
+    }
+  }
+
+  /**
+   * 每次读取时累加字节数，读到结尾或关闭时输出一次
+   */
+  private static class CountingSource extends ForwardingSource {
+    private final Request request;
+    private final long startTime;
+    private long byteCount;
+    private boolean reported;
+
+    CountingSource(Source delegate, Request request, long startTime) {
+      super(delegate);
+      this.request = request;
+      this.startTime = startTime;
+    }
+
+    @Override
+    public long read(Buffer sink, long count) throws IOException {
+      long read = super.read(sink, count);
+      if (read == -1) {
+        report(true);
+      } else {
+        byteCount += read;
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      report(false);
+      super.close();
+    }
+
+    private void report(boolean exhausted) {
+      if (reported) {
+        return;
+      }
+      reported = true;
+      NetworkMetrics.getInstance().recordDeliveredBytes(request.url().host(), byteCount);
+      Log.d(TAG, String.format("<-- END %s (%dms, %d bytes%s)", request.url(),
+        (System.nanoTime() - startTime) / 1000000, byteCount, exhausted ? "" : ", 未读完"));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.ionicframework.online.interceptor;
+
+/**
+ * 重试预算 - 限制重试次数占请求数的比例，服务器故障时重试不会成倍放大请求量
+ * 每个请求存入 ratio 个令牌，每次重试取出1个；另外每秒补充少量令牌，保证请求很少时也能重试
+ */
+public class RetryBudget {
+
+  // 默认重试比例：重试数不超过请求数的20%
+  private static final double DEFAULT_RATIO = 0.2;
+  // 默认每秒补充的令牌数
+  private static final double DEFAULT_MIN_RETRIES_PER_SECOND = 1;
+  // 令牌上限，避免长时间空闲后积累过多
+  private static final double DEFAULT_MAX_BALANCE = 10;
+
+  private static RetryBudget defaultBudget;
+
+  private final double ratio;
+  private final double minRetriesPerSecond;
+  private final double maxBalance;
+  private double balance;
+  private long lastRefillNanos = System.nanoTime();
+
+  public RetryBudget(double ratio, double minRetriesPerSecond, double maxBalance) {
+    this.ratio = Math.max(0, ratio);
+    this.minRetriesPerSecond = Math.max(0, minRetriesPerSecond);
+    this.maxBalance = Math.max(1, maxBalance);
+    this.balance = this.maxBalance;
+  }
+
+  /**
+   * 所有客户端共用的默认预算
+   */
+  public static synchronized RetryBudget getDefault() {
+    if (defaultBudget == null) {
+      defaultBudget = new RetryBudget(DEFAULT_RATIO, DEFAULT_MIN_RETRIES_PER_SECOND, DEFAULT_MAX_BALANCE);
+    }
+    return defaultBudget;
+  }
+
+  /**
+   * 记录一次请求（不含重试）
+   */
+  public synchronized void onRequest() {
+    refill();
+    balance = Math.min(maxBalance, balance + ratio);
+  }
+
+  /**
+   * 尝试取出一次重试的额度
+   * @return 是否允许重试
+   */
+  public synchronized boolean tryAcquireRetry() {
+    refill();
+    if (balance < 1) {
+      return false;
+    }
+    balance -= 1;
+    return true;
+  }
+
+  /**
+   * 当前可用的重试次数
+   */
+  public synchronized int getAvailableRetries() {
+    refill();
+    return (int) balance;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    double seconds = (now - lastRefillNanos) / 1e9;
+    lastRefillNanos = now;
+    balance = Math.min(maxBalance, balance + seconds * minRetriesPerSecond);
+  }
+}
@@ -1,62 +1,202 @@
 package com.ionicframework.online.interceptor;
 
+import android.util.Log;
+
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
 
+/**
+ * 重试拦截器 - 只自动重试幂等请求（GET/HEAD），POST等请求原样执行一次
+ * 退避时间为全抖动的指数退避：random(0, min(最大退避, 基础退避 * 2^重试次数))，
+ * 服务器返回 Retry-After 时按其等待；每次重试都需要从重试预算中取得额度
+ * 读写超时默认不重试（已经等待了整个超时时间，重试只会让调用方等待数倍的时间），
+ * 连接失败等快速失败的错误仍然重试；所有尝试加上退避的总时间超过上限后不再重试
+ */
 public class RetryInterceptor implements Interceptor {
+  private static final String TAG = "RetryInterceptor";
+
+  // 默认退避参数
+  private static final long DEFAULT_BASE_DELAY_MS = 200;
+  private static final long DEFAULT_MAX_DELAY_MS = 2000;
+  // Retry-After 超过该时间时不再等待，直接返回响应
+  private static final long MAX_RETRY_AFTER_MS = 5000;
+  // 从第一次请求开始计算，超过该时间后不再重试
+  private static final long DEFAULT_MAX_TOTAL_MS = 10000;
+
   private final int maxRetries;
+  private final long baseDelayMs;
+  private final long maxDelayMs;
+  private final RetryBudget retryBudget;
+  private final long maxTotalMs;
+  private final boolean retryOnTimeout;
+  private final Random random = new Random();
 
   public RetryInterceptor(int maxRetries) {
+    this(maxRetries, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, RetryBudget.getDefault());
+  }
+
+  /**
+   * @param maxRetries 单个请求的最大重试次数
+   * @param baseDelayMs 基础退避时间
+   * @param maxDelayMs 最大退避时间
+   * @param retryBudget 重试预算，多个客户端可共用
+   */
+  public RetryInterceptor(int maxRetries, long baseDelayMs, long maxDelayMs, RetryBudget retryBudget) {
+    this(maxRetries, baseDelayMs, maxDelayMs, retryBudget, DEFAULT_MAX_TOTAL_MS, false);
+  }
+
+  /**
+   * @param maxTotalMs 所有尝试和退避的总时间上限，超过后不再重试
+   * @param retryOnTimeout 读写超时后是否重试，交互请求（WebView资源）应为false
+   */
+  public RetryInterceptor(int maxRetries, long baseDelayMs, long maxDelayMs, RetryBudget retryBudget,
+                          long maxTotalMs, boolean retryOnTimeout) {
     this.maxRetries = maxRetries;
+    this.baseDelayMs = baseDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.retryBudget = retryBudget;
+    this.maxTotalMs = maxTotalMs;
+    this.retryOnTimeout = retryOnTimeout;
   }
 
   @Override
   public Response intercept(Chain chain) throws IOException {
     Request request = chain.request();
-    Response response = null;
-    IOException exception = null;
+    retryBudget.onRequest();
 
-    // 重试逻辑
-    for (int attempt = 0; attempt <= maxRetries; attempt++) {
-      try {
-        if (attempt > 0) {
-          // 如果不是第一次尝试，等待一段时间
-          try {
-            Thread.sleep(attempt * 1000L); // 指数退避
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrupted during retry", e);
-          }
-        }
+    // 非幂等请求（如加密的POST接口）不自动重试
+    if (!isIdempotent(request)) {
+      return chain.proceed(request);
+    }
 
+    long startTime = System.currentTimeMillis();
+    for (int attempt = 0; ; attempt++) {
+      Response response;
+      try {
         response = chain.proceed(request);
-
-        // 如果响应成功，直接返回
-        if (response.isSuccessful()) {
-          return response;
+      } catch (IOException e) {
+        if (chain.call().isCanceled()) {
+          throw e;
         }
-
-        // 如果是服务器错误，关闭响应体并继续重试
-        if (response.code() >= 500) {
-          response.close();
-          continue;
+        if (e instanceof SocketTimeoutException && !retryOnTimeout) {
+          Log.w(TAG, "请求超时，不再重试: " + request.url());
+          throw e;
+        }
+        long delayMs = backoffDelay(attempt);
+        if (!withinDeadline(startTime, delayMs, request) || !canRetry(attempt, request)) {
+          throw e;
         }
+        Log.w(TAG, "请求失败，准备重试(" + (attempt + 1) + "/" + maxRetries + "): " + request.url() + ", " + e.getMessage());
+        sleep(delayMs);
+        continue;
+      }
 
-        // 如果是客户端错误，不重试
+      if (!isRetryableStatus(response.code())) {
         return response;
+      }
 
-      } catch (IOException e) {
-        exception = e;
+      long retryAfterMs = parseRetryAfter(response.header("Retry-After"));
+      long delayMs = retryAfterMs >= 0 ? retryAfterMs : backoffDelay(attempt);
+      if (retryAfterMs > MAX_RETRY_AFTER_MS || !withinDeadline(startTime, delayMs, request) ||
+        !canRetry(attempt, request)) {
+        return response;
       }
+
+      Log.w(TAG, "服务器返回 " + response.code() + "，准备重试(" + (attempt + 1) + "/" + maxRetries + "): " + request.url());
+      response.close();
+      sleep(delayMs);
     }
+  }
+
+  /**
+   * 是否为可以安全重试的幂等请求
+   */
+  private static boolean isIdempotent(Request request) {
+    String method = request.method();
+    return "GET".equals(method) || "HEAD".equals(method);
+  }
 
-    // 所有重试都失败了
-    if (exception != null) {
-      throw exception;
+  /**
+   * 请求超时、限流和服务器临时错误可以重试
+   */
+  private static boolean isRetryableStatus(int code) {
+    return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+  }
+
+  private boolean canRetry(int attempt, Request request) {
+    if (attempt >= maxRetries) {
+      return false;
+    }
+    if (!retryBudget.tryAcquireRetry()) {
+      Log.w(TAG, "重试预算已用完，不再重试: " + request.url());
+      return false;
     }
+    return true;
+  }
 
-    return response;
+  /**
+   * 等待退避时间后是否仍在总时间上限内
+   */
+  private boolean withinDeadline(long startTime, long delayMs, Request request) {
+    if (System.currentTimeMillis() - startTime + delayMs <= maxTotalMs) {
+      return true;
+    }
+    Log.w(TAG, "已超过重试总时间上限 " + maxTotalMs + "ms，不再重试: " + request.url());
+    return false;
+  }
+
+  /**
+   * 全抖动的指数退避时间
+   */
+  private long backoffDelay(int attempt) {
+    long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20));
+    return ceiling > 0 ? (long) (random.nextDouble() * ceiling) : 0;
+  }
+
+  /**
+   * 解析 Retry-After，支持秒数和HTTP日期两种格式
+   * @return 等待毫秒数，没有或无法解析时返回-1
+   */
+  static long parseRetryAfter(String retryAfter) {
+    if (retryAfter == null || retryAfter.trim().isEmpty()) {
+      return -1;
+    }
+
+    String value = retryAfter.trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException e) {
+      // 不是秒数，按HTTP日期解析
+    }
+
+    try {
+      SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+      Date date = format.parse(value);
+      return Math.max(0, date.getTime() - System.currentTimeMillis());
+    } catch (ParseException e) {
+      return -1;
+    }
+  }
+
+  private static void sleep(long delayMs) throws IOException {
+    if (delayMs <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(delayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted during retry");
+    }
   }
 }
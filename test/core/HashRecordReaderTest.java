@@ -0,0 +1,99 @@
+package com.ionicframework.online.core;
+
+import com.google.gson.stream.JsonReader;
+import com.ionicframework.online.model.VersionError;
+import com.ionicframework.online.model.VersionErrorType;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * HashRecordReader 解析哈希文件JSON的单元测试，不依赖Android
+ */
+public class HashRecordReaderTest {
+
+  private static final String KEY = "0123456789abcdef0123456789abcdef";
+  private static final String VALUE = "fedcba9876543210fedcba9876543210";
+
+  @Test
+  public void readsRecords() throws Exception {
+    Md5Index.Builder builder = new Md5Index.Builder();
+    Md5Index index = HashRecordReader.read(reader(
+      "{\"" + KEY + "\":\"" + VALUE + "\",\"bad\":\"" + VALUE + "\",\"" + VALUE + "\":1}"), builder);
+
+    assertEquals(1, index.size());
+    assertEquals(VALUE, index.get(KEY));
+    assertEquals(1, builder.getSkippedCount());
+  }
+
+  @Test
+  public void emptyContentIsContentNull() throws Exception {
+    assertError(VersionErrorType.RESOURCE_CONTENT_NULL, "");
+    assertError(VersionErrorType.RESOURCE_CONTENT_NULL, "  \n");
+  }
+
+  @Test
+  public void malformedJsonIsParseError() throws Exception {
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{\"" + KEY + "\" \"" + VALUE + "\"}");
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{\"" + KEY + "\":\"" + VALUE + "\"]");
+  }
+
+  @Test
+  public void unexpectedStructureIsParseError() throws Exception {
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "[\"" + KEY + "\"]");
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "null");
+  }
+
+  @Test
+  public void truncatedJsonIsParseError() throws Exception {
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{\"" + KEY + "\":\"" + VALUE + "\",");
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{\"" + KEY + "\":\"" + VALUE.substring(0, 10));
+  }
+
+  @Test
+  public void noValidRecordsIsParseError() throws Exception {
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{}");
+    assertError(VersionErrorType.RESOURCE_PARSE_ERROR, "{\"bad\":\"" + VALUE + "\"}");
+  }
+
+  @Test
+  public void readFailureIsNotParseError() {
+    Reader failingReader = new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        throw new IOException("connection reset");
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    try {
+      HashRecordReader.read(new JsonReader(failingReader), new Md5Index.Builder());
+      fail("应抛出IOException");
+    } catch (IOException e) {
+      assertEquals("connection reset", e.getMessage());
+    } catch (VersionError e) {
+      fail("读取失败不应视为解析错误: " + e.getErrorType());
+    }
+  }
+
+  private static void assertError(String expectedType, String json) throws IOException {
+    try {
+      HashRecordReader.read(reader(json), new Md5Index.Builder());
+      fail("应抛出VersionError: " + json);
+    } catch (VersionError e) {
+      assertEquals(json, expectedType, e.getErrorType());
+    }
+  }
+
+  private static JsonReader reader(String json) {
+    return new JsonReader(new StringReader(json));
+  }
+}
@@ -0,0 +1,187 @@
+package com.ionicframework.online.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MappedMd5Index 和本地哈希记录加载（HashRecordReader.load）的单元测试，不依赖Android
+ */
+public class MappedMd5IndexTest {
+
+  private File dir;
+  private File indexFile;
+  private File jsonFile;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = File.createTempFile("mapped-md5-index", "");
+    dir.delete();
+    dir.mkdirs();
+    indexFile = new File(dir, "v1.idx");
+    jsonFile = new File(dir, "v1.json");
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void writeThenOpenRoundTrip() {
+    Map<String, String> record = randomRecord(2000, new Random(1));
+    Md5Index source = Md5Index.fromMap(record);
+
+    assertTrue(MappedMd5Index.write(source, indexFile));
+    assertFalse("临时文件应已重命名", new File(dir, "v1.idx.tmp").exists());
+    assertEquals(16 + record.size() * 32L, indexFile.length());
+
+    MappedMd5Index mapped = MappedMd5Index.open(indexFile);
+    assertNotNull(mapped);
+    assertEquals(record.size(), mapped.size());
+    for (Map.Entry<String, String> entry : record.entrySet()) {
+      assertEquals(entry.getValue(), mapped.get(entry.getKey()));
+    }
+    assertNull(mapped.get("00000000000000000000000000000000"));
+    assertEquals(record, new HashMap<>(mapped.asMap()));
+  }
+
+  @Test
+  public void openRejectsWrongFormatVersion() throws IOException {
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(randomRecord(10, new Random(2))), indexFile));
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.seek(4);
+      file.writeInt(2);
+    }
+    assertNull(MappedMd5Index.open(indexFile));
+  }
+
+  @Test
+  public void openRejectsWrongMagic() throws IOException {
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(randomRecord(10, new Random(3))), indexFile));
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.writeInt(0x7B226162); // JSON文件的开头
+    }
+    assertNull(MappedMd5Index.open(indexFile));
+  }
+
+  @Test
+  public void openRejectsTruncatedFile() throws IOException {
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(randomRecord(10, new Random(4))), indexFile));
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.setLength(file.length() - 8);
+    }
+    assertNull(MappedMd5Index.open(indexFile));
+
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.setLength(10);
+    }
+    assertNull(MappedMd5Index.open(indexFile));
+  }
+
+  @Test
+  public void openReturnsNullForMissingFile() {
+    assertNull(MappedMd5Index.open(indexFile));
+    assertNull(MappedMd5Index.open(null));
+  }
+
+  @Test
+  public void loadPrefersIndexFile() throws Exception {
+    Map<String, String> record = randomRecord(100, new Random(5));
+    writeJson(record);
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(record), indexFile));
+
+    DigestIndex index = HashRecordReader.load(indexFile, jsonFile);
+    assertTrue(index instanceof MappedMd5Index);
+    assertEquals(record, new HashMap<>(index.asMap()));
+  }
+
+  @Test
+  public void loadFallsBackToJsonWhenIndexTruncated() throws Exception {
+    Map<String, String> record = randomRecord(100, new Random(6));
+    writeJson(record);
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(record), indexFile));
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.setLength(file.length() / 2);
+    }
+
+    DigestIndex index = HashRecordReader.load(indexFile, jsonFile);
+    assertTrue("截断的索引文件应改为解析JSON", index instanceof Md5Index);
+    assertEquals(record, new HashMap<>(index.asMap()));
+
+    // 索引文件已重新生成，下次直接映射
+    DigestIndex reloaded = HashRecordReader.load(indexFile, jsonFile);
+    assertTrue(reloaded instanceof MappedMd5Index);
+    assertEquals(record, new HashMap<>(reloaded.asMap()));
+  }
+
+  @Test
+  public void loadFallsBackToJsonWhenIndexVersionDiffers() throws Exception {
+    Map<String, String> record = randomRecord(50, new Random(7));
+    writeJson(record);
+    assertTrue(MappedMd5Index.write(Md5Index.fromMap(record), indexFile));
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.seek(4);
+      file.writeInt(99);
+    }
+
+    DigestIndex index = HashRecordReader.load(indexFile, jsonFile);
+    assertTrue(index instanceof Md5Index);
+    assertEquals(record, new HashMap<>(index.asMap()));
+    assertNotNull(MappedMd5Index.open(indexFile));
+  }
+
+  @Test
+  public void loadReturnsNullWithoutCachedFiles() throws Exception {
+    assertNull(HashRecordReader.load(indexFile, jsonFile));
+  }
+
+  private void writeJson(Map<String, String> record) throws IOException {
+    try (OutputStream outputStream = new FileOutputStream(jsonFile);
+         Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      writer.write('{');
+      boolean first = true;
+      for (Map.Entry<String, String> entry : record.entrySet()) {
+        if (!first) {
+          writer.write(',');
+        }
+        first = false;
+        writer.write("\"" + entry.getKey() + "\":\"" + entry.getValue() + "\"");
+      }
+      writer.write('}');
+    }
+  }
+
+  private static Map<String, String> randomRecord(int size, Random random) {
+    Map<String, String> record = new HashMap<>();
+    while (record.size() < size) {
+      record.put(DigestIndex.toHex(random.nextLong(), random.nextLong()),
+        DigestIndex.toHex(random.nextLong(), random.nextLong()));
+    }
+    return record;
+  }
+}
@@ -0,0 +1,187 @@
+package com.ionicframework.online.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Md5Index 单元测试，不依赖Android
+ */
+public class Md5IndexTest {
+
+  @Test
+  public void buildSortsKeys() {
+    Md5Index.Builder builder = new Md5Index.Builder();
+    builder.add("ffffffffffffffffffffffffffffffff", "00000000000000000000000000000003");
+    builder.add("00000000000000000000000000000001", "00000000000000000000000000000001");
+    builder.add("80000000000000000000000000000000", "00000000000000000000000000000002");
+    builder.add("7fffffffffffffffffffffffffffffff", "00000000000000000000000000000004");
+    Md5Index index = builder.build();
+
+    assertEquals(4, index.size());
+    for (int i = 1; i < index.size(); i++) {
+      assertTrue("第 " + i + " 条未按key排序",
+        DigestIndex.compare(index.keyHigh(i - 1), index.keyLow(i - 1), index.keyHigh(i), index.keyLow(i)) < 0);
+    }
+    assertEquals("00000000000000000000000000000003", index.get("ffffffffffffffffffffffffffffffff"));
+    assertEquals("00000000000000000000000000000002", index.get("80000000000000000000000000000000"));
+  }
+
+  @Test
+  public void buildRemovesDuplicateKeys() {
+    Md5Index.Builder builder = new Md5Index.Builder(2);
+    String key = "0123456789abcdef0123456789abcdef";
+    builder.add(key, "11111111111111111111111111111111");
+    builder.add("fedcba9876543210fedcba9876543210", "22222222222222222222222222222222");
+    builder.add(key.toUpperCase(), "11111111111111111111111111111111");
+    Md5Index index = builder.build();
+
+    assertEquals(2, index.size());
+    assertEquals("11111111111111111111111111111111", index.get(key));
+  }
+
+  @Test
+  public void addSkipsMalformedEntries() {
+    Md5Index.Builder builder = new Md5Index.Builder();
+    String valid = "0123456789abcdef0123456789abcdef";
+    assertFalse(builder.add("0123456789abcdef0123456789abcde", valid));
+    assertFalse(builder.add("0123456789abcdef0123456789abcdeg", valid));
+    assertFalse(builder.add(valid, null));
+    // 全角数字 Character.digit 也能解析，但不是合法的十六进制摘要
+    assertFalse(builder.add("0123456789abcdef0123456789abcde０", valid));
+    assertTrue(builder.add(valid, valid.toUpperCase()));
+
+    assertEquals(4, builder.getSkippedCount());
+    Md5Index index = builder.build();
+    assertEquals(1, index.size());
+    assertEquals(valid, index.get(valid));
+  }
+
+  @Test
+  public void emptyBuilderReturnsEmptyIndex() {
+    assertSame(Md5Index.EMPTY, new Md5Index.Builder().build());
+    assertNull(Md5Index.EMPTY.get("0123456789abcdef0123456789abcdef"));
+    assertNull(Md5Index.EMPTY.lookup("index.html"));
+  }
+
+  @Test
+  public void getFindsEveryEntry() {
+    Map<String, String> record = randomRecord(5000, new Random(1));
+    Md5Index index = Md5Index.fromMap(record);
+
+    assertEquals(record.size(), index.size());
+    for (Map.Entry<String, String> entry : record.entrySet()) {
+      assertEquals(entry.getValue(), index.get(entry.getKey()));
+    }
+    assertNull(index.get("not a digest"));
+  }
+
+  @Test
+  public void getReturnsNullForAbsentKeys() {
+    Random random = new Random(2);
+    Map<String, String> record = randomRecord(1000, random);
+    Md5Index index = Md5Index.fromMap(record);
+
+    for (int i = 0; i < 1000; i++) {
+      String key = randomHex(random);
+      if (!record.containsKey(key)) {
+        assertNull(index.get(key));
+      }
+    }
+  }
+
+  @Test
+  public void lookupTriesBothSlashForms() throws Exception {
+    Md5Index.Builder builder = new Md5Index.Builder();
+    builder.add(md5("build/main.js"), "11111111111111111111111111111111");
+    builder.add(md5("/index.html"), "22222222222222222222222222222222");
+    Md5Index index = builder.build();
+
+    assertEquals("11111111111111111111111111111111", index.lookup("build/main.js"));
+    assertEquals("11111111111111111111111111111111", index.lookup("/build/main.js"));
+    assertEquals("22222222222222222222222222222222", index.lookup("index.html"));
+    assertEquals("22222222222222222222222222222222", index.lookup("/index.html"));
+    assertNull(index.lookup("missing.css"));
+  }
+
+  @Test
+  public void mapViewMatchesIndex() {
+    Map<String, String> record = randomRecord(200, new Random(3));
+    Map<String, String> view = Md5Index.fromMap(record).asMap();
+
+    assertEquals(record, new HashMap<>(view));
+    assertSame(Md5Index.fromMap(view), DigestIndex.unwrap(view));
+  }
+
+  /**
+   * 1万条和10万条记录的构建耗时、查找耗时和堆占用，只输出结果，不作为通过条件
+   */
+  @Test
+  public void measureHeapAndTime() {
+    for (int size : new int[]{10000, 100000}) {
+      Random random = new Random(size);
+      String[] keys = new String[size];
+      String[] values = new String[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = randomHex(random);
+        values[i] = randomHex(random);
+      }
+
+      long heapBefore = usedHeap();
+      long buildStart = System.nanoTime();
+      Md5Index.Builder builder = new Md5Index.Builder(size);
+      for (int i = 0; i < size; i++) {
+        builder.add(keys[i], values[i]);
+      }
+      Md5Index index = builder.build();
+      long buildNanos = System.nanoTime() - buildStart;
+      long heapAfter = usedHeap();
+
+      long lookupStart = System.nanoTime();
+      for (int i = 0; i < size; i++) {
+        assertEquals(values[i], index.get(keys[i]));
+      }
+      long lookupNanos = System.nanoTime() - lookupStart;
+
+      System.out.println("Md5Index " + size + " 条: 构建 " + buildNanos / 1000000 + "ms, 查找 " +
+        lookupNanos / size + "ns/次, 堆占用约 " + Math.max(0, heapAfter - heapBefore) / 1024 + "KB（数组 " +
+        (size * 32L) / 1024 + "KB）");
+      assertEquals(size, index.size());
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static Map<String, String> randomRecord(int size, Random random) {
+    Map<String, String> record = new HashMap<>();
+    while (record.size() < size) {
+      record.put(randomHex(random), randomHex(random));
+    }
+    return record;
+  }
+
+  private static String randomHex(Random random) {
+    return DigestIndex.toHex(random.nextLong(), random.nextLong());
+  }
+
+  private static String md5(String input) throws Exception {
+    byte[] digest = MessageDigest.getInstance("MD5").digest(input.getBytes(StandardCharsets.UTF_8));
+    return DigestIndex.toHex(DigestIndex.readLong(digest, 0), DigestIndex.readLong(digest, 8));
+  }
+}
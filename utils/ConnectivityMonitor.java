@@ -0,0 +1,141 @@
+package com.ionicframework.online.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 网络状态监听 - 通过 NetworkCallback 订阅网络变化，不需要每次请求前查询网络状态
+ * Android 5.0 以下没有 NetworkCallback，每次调用 isConnected() 时查询
+ */
+public class ConnectivityMonitor {
+  private static final String TAG = "ConnectivityMonitor";
+
+  private static ConnectivityMonitor instance;
+
+  /**
+   * 网络状态变化回调，在系统回调线程中执行
+   */
+  public interface Listener {
+    void onConnectivityChanged(boolean connected);
+  }
+
+  private final Context context;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  // 当前可用的网络，全部断开时为空
+  private final Set<Network> availableNetworks = new HashSet<>();
+  private volatile boolean connected;
+  private boolean registered;
+
+  public static synchronized ConnectivityMonitor getInstance(Context context) {
+    if (instance == null) {
+      instance = new ConnectivityMonitor(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private ConnectivityMonitor(Context context) {
+    this.context = context;
+    this.connected = NetworkUtils.isNetworkAvailable(context);
+    register();
+  }
+
+  private void register() {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+      return;
+    }
+    ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    if (cm == null) {
+      return;
+    }
+
+    NetworkRequest request = new NetworkRequest.Builder()
+      .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+      .build();
+    try {
+      cm.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+          boolean changed;
+          synchronized (availableNetworks) {
+            availableNetworks.add(network);
+            changed = updateConnected(true);
+          }
+          if (changed) {
+            notifyListeners(true);
+          }
+        }
+
+        @Override
+        public void onLost(Network network) {
+          boolean changed;
+          synchronized (availableNetworks) {
+            availableNetworks.remove(network);
+            changed = updateConnected(!availableNetworks.isEmpty());
+          }
+          if (changed) {
+            notifyListeners(false);
+          }
+        }
+      });
+      registered = true;
+      Log.d(TAG, "已订阅网络状态变化，当前: " + (connected ? "已连接" : "未连接"));
+    } catch (Exception e) {
+      // 部分机型缺少权限或回调数量超限时会抛出异常，退回到每次查询
+      Log.e(TAG, "订阅网络状态失败: " + e.getMessage());
+    }
+  }
+
+  private boolean updateConnected(boolean connected) {
+    if (this.connected == connected) {
+      return false;
+    }
+    this.connected = connected;
+    Log.i(TAG, "网络状态变化: " + (connected ? "已连接" : "已断开"));
+    return true;
+  }
+
+  private void notifyListeners(boolean connected) {
+    for (Listener listener : listeners) {
+      try {
+        listener.onConnectivityChanged(connected);
+      } catch (Exception e) {
+        Log.e(TAG, "网络状态回调出错", e);
+      }
+    }
+  }
+
+  /**
+   * 当前是否有可用网络
+   */
+  public boolean isConnected() {
+    if (!registered) {
+      return NetworkUtils.isNetworkAvailable(context);
+    }
+    return connected;
+  }
+
+  /**
+   * 添加监听，添加时立即回调一次当前状态
+   */
+  public void addListener(Listener listener) {
+    if (listener == null || listeners.contains(listener)) {
+      return;
+    }
+    listeners.add(listener);
+    listener.onConnectivityChanged(isConnected());
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+}
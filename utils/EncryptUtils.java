@@ -207,6 +207,20 @@ public class EncryptUtils {
     }
   }
 
+  /**
+   * MD5摘要，返回16字节原始值，用于按摘要查找时避免转换十六进制字符串
+   * @return 计算失败时返回null
+   */
+  public static byte[] md5Raw(String input) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("MD5");
+      return md.digest(input.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      Log.e(TAG, "MD5计算失败", e);
+      return null;
+    }
+  }
+
   /**
    * SHA256加密
    */
@@ -224,7 +238,7 @@ public class EncryptUtils {
   /**
    * 字节数组转十六进制字符串
    */
-  private static String bytesToHex(byte[] bytes) {
+  public static String bytesToHex(byte[] bytes) {
     StringBuilder hexString = new StringBuilder();
     for (byte b : bytes) {
       String hex = Integer.toHexString(0xff & b);
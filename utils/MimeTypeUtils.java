@@ -54,4 +54,16 @@ public class MimeTypeUtils {
       return "application/octet-stream";
     }
   }
+
+  /**
+   * 是否为适合压缩存储的文本类资源（图片、字体、音视频等本身已压缩的格式不再压缩）
+   */
+  public static boolean isCompressible(String path) {
+    String mimeType = guessMimeTypeFromUrl(path);
+    return mimeType.startsWith("text/") ||
+      mimeType.equals("application/javascript") ||
+      mimeType.equals("application/json") ||
+      mimeType.equals("application/xml") ||
+      mimeType.equals("image/svg+xml");
+  }
 }